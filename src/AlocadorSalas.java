@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distribui turmas presenciais pelas salas do inventario sem choque de horario
+ * e respeitando a capacidade (lugares da sala >= capacidade maxima da turma).
+ *
+ * A alocacao completa e gulosa: as turmas mais restritas vao primeiro (menos
+ * salas grandes o bastante, depois mais meias horas na semana) e cada uma fica
+ * com a menor sala livre que a comporta. A ocupacao de cada sala e uma
+ * {@link OcupacaoSemanal}, entao ver se a sala esta livre e um AND de 6 longs.
+ *
+ * Para uma turma nova ou alterada ({@link #alocar(Turma)}) nada e refeito: se
+ * nao ha sala livre, tenta liberar uma mudando de sala a unica turma que a
+ * ocupa naquele horario (reparo local).
+ *
+ * Turmas sem horario no formato "Seg 14h-16h" nao sao alocadas: sem horario
+ * nao da para saber com quem elas se chocam.
+ */
+public class AlocadorSalas {
+    private final List<Sala> salas; // em ordem crescente de capacidade
+    private final OcupacaoSemanal[] ocupacao;
+    private final List<List<Turma>> turmasPorSala = new ArrayList<>();
+    private final Map<Turma, Integer> salaDaTurma = new HashMap<>();
+    private final Map<String, Integer> indicePorCodigo = new HashMap<>();
+    // fixadas numa sala pequena demais ou ja ocupada no horario
+    private final List<Turma> problemas = new ArrayList<>();
+
+    /**
+     * @param salas inventario
+     */
+    public AlocadorSalas(Collection<Sala> salas) {
+        this.salas = new ArrayList<>(salas);
+        this.salas.sort(Comparator.comparingInt(Sala::capacidade));
+        this.ocupacao = new OcupacaoSemanal[this.salas.size()];
+        for (int i = 0; i < ocupacao.length; i++) {
+            ocupacao[i] = new OcupacaoSemanal();
+            turmasPorSala.add(new ArrayList<>());
+            indicePorCodigo.put(chave(this.salas.get(i).codigo()), i);
+        }
+    }
+
+    /**
+     * Registra uma alocacao ja existente (sala digitada ou alocada antes). A
+     * sala fica ocupada no horario da turma mesmo se a turma nao couber nela ou
+     * se chocar com outra: a turma esta la de fato, e a sala nao pode ser dada
+     * a mais ninguem nesse horario. Esses casos ficam em {@link #getProblemas()}.
+     *
+     * @param turma
+     * @return false se a sala nao esta no inventario, nao comporta a turma ou
+     *         ja esta ocupada naquele horario
+     */
+    public boolean fixar(Turma turma) {
+        Integer sala = turma.getSala() == null ? null : indicePorCodigo.get(chave(turma.getSala()));
+        if (sala == null) {
+            return false;
+        }
+        liberar(turma);
+        boolean ok = cabe(turma, sala) && !ocupacao[sala].conflitaCom(turma);
+        ocupar(turma, sala);
+        if (!ok) {
+            problemas.add(turma);
+        }
+        return ok;
+    }
+
+    /**
+     * Descarta as alocacoes atuais e aloca todas as turmas do zero.
+     *
+     * @param turmas turmas presenciais
+     * @return turmas que ficaram sem sala
+     */
+    public List<Turma> alocarTodas(Collection<Turma> turmas) {
+        salaDaTurma.clear();
+        problemas.clear();
+        for (int i = 0; i < ocupacao.length; i++) {
+            turmasPorSala.get(i).clear();
+            ocupacao[i].refazer(turmasPorSala.get(i));
+        }
+
+        List<Turma> ordem = new ArrayList<>(turmas);
+        Map<Turma, Integer> salasPossiveis = new HashMap<>();
+        Map<Turma, Integer> meiasHoras = new HashMap<>();
+        for (Turma turma : ordem) {
+            salasPossiveis.put(turma, salas.size() - primeiraQueCabe(turma));
+            meiasHoras.put(turma, turma.getHorarioSemanal().getTotalMeiasHoras());
+        }
+        ordem.sort(Comparator.<Turma>comparingInt(salasPossiveis::get)
+                .thenComparing(Comparator.<Turma>comparingInt(meiasHoras::get).reversed()));
+
+        List<Turma> semSala = new ArrayList<>();
+        for (Turma turma : ordem) {
+            if (alocar(turma) == null) {
+                semSala.add(turma);
+            }
+        }
+        return semSala;
+    }
+
+    /**
+     * Aloca uma turma sem mexer no resto, a nao ser por um reparo local: se
+     * nenhuma sala esta livre, uma turma que ocupa sozinha o horario numa sala
+     * que serviria pode ser mudada para outra sala livre.
+     *
+     * @param turma
+     * @return a sala escolhida, ou null se nao foi possivel
+     */
+    public Sala alocar(Turma turma) {
+        liberar(turma);
+        if (turma.getHorarioSemanal().isVazio()) {
+            return null;
+        }
+        int inicio = primeiraQueCabe(turma);
+        int livre = salaLivre(turma, inicio, -1);
+        if (livre >= 0) {
+            ocupar(turma, livre);
+            return salas.get(livre);
+        }
+
+        // reparo: tirar da sala a unica turma que atrapalha
+        for (int sala = inicio; sala < salas.size(); sala++) {
+            Turma bloqueio = null;
+            int bloqueios = 0;
+            for (Turma outra : turmasPorSala.get(sala)) {
+                if (OcupacaoSemanal.seChocam(outra, turma) && bloqueios++ == 0) {
+                    bloqueio = outra;
+                }
+            }
+            if (bloqueios != 1) {
+                continue;
+            }
+            int destino = salaLivre(bloqueio, primeiraQueCabe(bloqueio), sala);
+            if (destino >= 0) {
+                liberar(bloqueio);
+                ocupar(bloqueio, destino);
+                ocupar(turma, sala);
+                return salas.get(sala);
+            }
+        }
+        return null;
+    }
+
+    public void liberar(Turma turma) {
+        problemas.remove(turma);
+        Integer sala = salaDaTurma.remove(turma);
+        if (sala != null) {
+            List<Turma> turmas = turmasPorSala.get(sala);
+            turmas.remove(turma);
+            ocupacao[sala].refazer(turmas);
+        }
+    }
+
+    /**
+     * @param turma
+     * @return sala atribuida a turma, ou null
+     */
+    public Sala getSala(Turma turma) {
+        Integer sala = salaDaTurma.get(turma);
+        return sala == null ? null : salas.get(sala);
+    }
+
+    /**
+     * @return turma -> sala de todas as turmas alocadas
+     */
+    public Map<Turma, Sala> getAlocacoes() {
+        Map<Turma, Sala> alocacoes = new LinkedHashMap<>();
+        salaDaTurma.forEach((turma, sala) -> alocacoes.put(turma, salas.get(sala)));
+        return alocacoes;
+    }
+
+    /**
+     * @return turmas fixadas numa sala que nao as comporta ou em choque com
+     *         outra turma da sala
+     */
+    public List<Turma> getProblemas() {
+        return List.copyOf(problemas);
+    }
+
+    /**
+     * @param sala
+     * @return turmas alocadas na sala
+     */
+    public List<Turma> getTurmas(Sala sala) {
+        Integer indice = indicePorCodigo.get(chave(sala.codigo()));
+        return indice == null ? List.of() : List.copyOf(turmasPorSala.get(indice));
+    }
+
+    private void ocupar(Turma turma, int sala) {
+        salaDaTurma.put(turma, sala);
+        turmasPorSala.get(sala).add(turma);
+        ocupacao[sala].adicionar(turma);
+    }
+
+    // menor sala (a partir de inicio) livre no horario da turma, ou -1
+    private int salaLivre(Turma turma, int inicio, int exceto) {
+        for (int sala = inicio; sala < salas.size(); sala++) {
+            if (sala != exceto && !ocupacao[sala].conflitaCom(turma)) {
+                return sala;
+            }
+        }
+        return -1;
+    }
+
+    // indice da menor sala que comporta a turma (salas.size() se nenhuma)
+    private int primeiraQueCabe(Turma turma) {
+        int baixo = 0, alto = salas.size();
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (salas.get(meio).capacidade() < turma.getCapacidadeMaxima()) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    private boolean cabe(Turma turma, int sala) {
+        return salas.get(sala).capacidade() >= turma.getCapacidadeMaxima();
+    }
+
+    private static String chave(String codigo) {
+        return codigo.trim().toUpperCase();
+    }
+}
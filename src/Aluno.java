@@ -1,9 +1,25 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
 public class Aluno {
 
     private String nome;
     private final String matricula; // matricula nao pode ser alterada dps
     private String curso;
     private boolean especial;
+    private boolean alterado; // mudou desde o ultimo salvamento
+    private int id = -1;
+    // indice reverso das matriculas, mantido por Turma.matricularAluno/removerAluno;
+    // sincronizado porque a carga monta turmas em paralelo
+    private final List<Turma> turmas = new ArrayList<>();
+    // bit i = aprovado em alguma turma atual da disciplina de id i
+    private long[] disciplinasConcluidas = new long[0];
+    private final Map<Integer, Integer> aprovacoes = new HashMap<>(); // id da disciplina -> turmas aprovadas
+    private final OcupacaoSemanal ocupacao = new OcupacaoSemanal(); // horarios das turmas
 
     public Aluno(String nome, String matricula, String curso, boolean especial) {
         if (matricula == null || matricula.isBlank()) {
@@ -21,6 +37,7 @@ public class Aluno {
 
     public void setNome(String nome) {
         this.nome = nome;
+        this.alterado = true;
     }
 
     public String getMatricula() {
@@ -33,6 +50,7 @@ public class Aluno {
 
     public void setCurso(String curso) {
         this.curso = curso;
+        this.alterado = true;
     }
 
     public boolean isEspecial() {
@@ -41,6 +59,7 @@ public class Aluno {
 
     public void setEspecial(boolean especial) {
         this.especial = especial;
+        this.alterado = true;
     }
 
     public boolean podeMatricular(int cursosAtuais) {
@@ -49,14 +68,150 @@ public class Aluno {
 
     private boolean emAfastamento;
 
-    public void setEmAfastamento(boolean emAfastamento) {
+    public synchronized void setEmAfastamento(boolean emAfastamento) {
         this.emAfastamento = emAfastamento;
+        this.alterado = true;
     }
 
-    public boolean isEmAfastamento() {
+    public synchronized boolean isEmAfastamento() {
         return emAfastamento;
     }
 
+    /**
+     * @return id atribuido pelo {@link RegistroAcademico}, ou -1 se ainda nao
+     *         foi registrado
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return copia das turmas em que o aluno esta matriculado
+     */
+    public synchronized List<Turma> getTurmas() {
+        return new ArrayList<>(turmas);
+    }
+
+    public synchronized int getTotalTurmas() {
+        return turmas.size();
+    }
+
+    /**
+     * As turmas de outros semestres ficam como historico: quem reprovou pode
+     * cursar a disciplina de novo num semestre seguinte.
+     *
+     * @param disciplina
+     * @param semestre
+     * @return true se o aluno esta matriculado em alguma turma da disciplina
+     *         no semestre
+     */
+    public synchronized boolean isMatriculadoEm(Disciplina disciplina, String semestre) {
+        for (Turma turma : turmas) {
+            if (turma.getDisciplina() == disciplina && Objects.equals(turma.getSemestre(), semestre)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized void adicionarTurma(Turma turma) {
+        turmas.add(turma);
+        ocupacao.adicionar(turma);
+    }
+
+    synchronized void removerTurma(Turma turma) {
+        if (turmas.remove(turma)) {
+            ocupacao.refazer(turmas);
+        }
+    }
+
+    /**
+     * @param turma
+     * @return turma do aluno com horario em choque com a informada, ou null
+     */
+    public synchronized Turma buscarConflitoDeHorario(Turma turma) {
+        return ocupacao.buscarConflito(turmas, turma);
+    }
+
+    /**
+     * @param idDisciplina
+     * @return true se o aluno foi aprovado numa turma da disciplina
+     */
+    public synchronized boolean isConcluida(int idDisciplina) {
+        int palavra = idDisciplina >>> 6;
+        return idDisciplina >= 0 && palavra < disciplinasConcluidas.length
+                && (disciplinasConcluidas[palavra] & (1L << idDisciplina)) != 0;
+    }
+
+    /**
+     * @param requisitos bitset de ids de disciplina
+     * @return true se o aluno concluiu todas as disciplinas do bitset
+     */
+    public synchronized boolean concluiuTodas(long[] requisitos) {
+        for (int i = 0; i < requisitos.length; i++) {
+            long concluidas = i < disciplinasConcluidas.length ? disciplinasConcluidas[i] : 0L;
+            if ((requisitos[i] & ~concluidas) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return copia do bitset de disciplinas concluidas (bit = id da
+     *         disciplina)
+     */
+    public synchronized long[] getDisciplinasConcluidas() {
+        return disciplinasConcluidas.clone();
+    }
+
+    /**
+     * Chamado pela turma quando o aluno passa a estar aprovado nela ou deixa de
+     * estar (inclusive ao sair da turma). Conta as turmas aprovadas por
+     * disciplina em vez de consultar as turmas, para nao chamar de volta uma
+     * turma que esta com a trava de escrita.
+     *
+     * @param disciplina
+     * @param aprovou    true ao ganhar a aprovacao, false ao perder
+     */
+    synchronized void atualizarConclusao(Disciplina disciplina, boolean aprovou) {
+        int id = disciplina == null ? -1 : disciplina.getId();
+        if (id < 0) {
+            return;
+        }
+        int total = aprovacoes.getOrDefault(id, 0) + (aprovou ? 1 : -1);
+        if (total > 0) {
+            aprovacoes.put(id, total);
+        } else {
+            aprovacoes.remove(id);
+        }
+        boolean aprovado = total > 0;
+        int palavra = id >>> 6;
+        if (palavra >= disciplinasConcluidas.length) {
+            if (!aprovado) {
+                return;
+            }
+            disciplinasConcluidas = Arrays.copyOf(disciplinasConcluidas, palavra + 1);
+        }
+        if (aprovado) {
+            disciplinasConcluidas[palavra] |= 1L << id;
+        } else {
+            disciplinasConcluidas[palavra] &= ~(1L << id);
+        }
+    }
+
+    public boolean isAlterado() {
+        return alterado;
+    }
+
+    public void marcarSalvo() {
+        alterado = false;
+    }
+
     @Override
     public String toString() {
         return "Aluno: " + nome + "\n" +
@@ -1,3 +1,5 @@
+import java.io.IOException;
+
 public class AlunoCsvFormatter implements CsvService.CsvFormatter<Aluno> {
     @Override
     public String getHeader() {
@@ -5,12 +7,11 @@ public class AlunoCsvFormatter implements CsvService.CsvFormatter<Aluno> {
     }
 
     @Override
-    public String format(Aluno aluno) {
-        return String.format("\"%s\",%s,\"%s\",%s,%s",
-                aluno.getNome().replace("\"", "\"\""),
-                aluno.getMatricula(),
-                aluno.getCurso().replace("\"", "\"\""),
-                aluno.isEspecial(),
-                aluno.isEmAfastamento());
+    public void format(Aluno aluno, CsvEscritor out) throws IOException {
+        out.campoComAspas(aluno.getNome())
+                .campo(aluno.getMatricula())
+                .campoComAspas(aluno.getCurso())
+                .campo(aluno.isEspecial())
+                .campo(aluno.isEmAfastamento());
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+/**
+ * Um aluno dentro de uma turma; e a linha dos arquivos que tem um registro por
+ * matricula (notas, relatorio de desempenho).
+ *
+ * @param turma
+ * @param aluno
+ */
+public record AlunoNaTurma(Turma turma, Aluno aluno) {
+}
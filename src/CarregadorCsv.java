@@ -0,0 +1,396 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Carrega os CSVs de {@link CsvService#DATA_DIR} em paralelo.
+ *
+ * Professores, disciplinas e alunos nao dependem uns dos outros e sao lidos ao
+ * mesmo tempo; turmas so comeca depois, porque referencia os tres, e notas
+ * depois de turmas. Arquivos
+ * grandes sao divididos em blocos alinhados em fim de registro e cada bloco e
+ * lido numa tarefa separada. Um campo com aspas pode ter quebra de linha, entao
+ * os limites sao achados seguindo as aspas como o {@link CsvTokenizer}.
+ *
+ * Cada arquivo vira um {@link ByteBuffer} (ver {@link CsvService#lerBytes}),
+ * lido de uma vez pelo canal, sem passar por um Reader: os limites dos
+ * blocos e o cabecalho sao achados direto nos bytes, e cada bloco e
+ * decodificado aos poucos para dentro do buffer do {@link CsvTokenizer}, sem
+ * montar o texto do arquivo inteiro.
+ */
+public class CarregadorCsv {
+    private static final int TAMANHO_MINIMO_BLOCO = 1 << 20;
+
+    // estados de fimDoRegistro, os mesmos do CsvTokenizer
+    private static final int INICIO_CAMPO = 0;
+    private static final int SEM_ASPAS = 1;
+    private static final int COM_ASPAS = 2;
+    private static final int ASPAS_DENTRO = 3;
+
+    private final Executor executor;
+    private final int maxBlocos;
+    private final Charset charset = Charset.defaultCharset(); // o mesmo do FileReader/FileWriter
+
+    /**
+     * @param executor
+     * @param maxBlocos numero maximo de blocos por arquivo (normalmente o
+     *                  numero de threads do executor)
+     */
+    public CarregadorCsv(Executor executor, int maxBlocos) {
+        this.executor = executor;
+        this.maxBlocos = Math.max(1, maxBlocos);
+    }
+
+    public void carregar(RegistroAcademico registro) throws IOException {
+        CompletableFuture<List<Professor>> professores = lerArquivo("professores.csv", CarregadorCsv::lerProfessor);
+        CompletableFuture<List<Disciplina>> disciplinas = lerArquivo("disciplinas.csv", CarregadorCsv::lerDisciplina);
+        CompletableFuture<List<Aluno>> alunos = lerArquivo("alunos.csv", CarregadorCsv::lerAluno);
+
+        aguardar(CompletableFuture.allOf(professores, disciplinas, alunos));
+        professores.join().forEach(registro::adicionarProfessor);
+        disciplinas.join().forEach(registro::adicionarDisciplina);
+        alunos.join().forEach(registro::adicionarAluno);
+
+        // a partir daqui o registro so e lido pelas tarefas de turmas
+        CompletableFuture<List<Turma>> turmas = lerArquivo("turmas.csv", campos -> lerTurma(campos, registro));
+        aguardar(turmas);
+        for (Turma turma : turmas.join()) {
+            if (!registro.adicionarTurma(turma)) {
+                turma.removerTodosAlunos(Turma.Movimentos.NENHUM);
+            }
+        }
+
+        // as linhas sao lidas em paralelo, mas aplicadas aqui: varias linhas
+        // mexem na mesma turma
+        CompletableFuture<List<LancamentoNotas>> notas =
+                lerArquivo("notas.csv", campos -> lerNotas(campos, registro));
+        aguardar(notas);
+        for (LancamentoNotas lancamento : notas.join()) {
+            try {
+                lancamento.turma().definirNotas(lancamento.aluno(), lancamento.notas());
+                if (lancamento.mapaFaltas() != null) {
+                    lancamento.turma().definirMapaFaltas(lancamento.aluno(), lancamento.mapaFaltas());
+                } else {
+                    lancamento.turma().definirFaltas(lancamento.aluno(), lancamento.faltas());
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.printf("Notas ignoradas (%s, %s): %s%n", lancamento.turma().getCodigo(),
+                        lancamento.aluno().getMatricula(), e.getMessage());
+            }
+        }
+    }
+
+    private <T> CompletableFuture<List<T>> lerArquivo(String nome, Function<CsvTokenizer.Campos, T> leitor) {
+        File file = new File(CsvService.DATA_DIR + nome);
+
+        return CompletableFuture.supplyAsync(() -> ler(file), executor)
+                .thenCompose(bytes -> {
+                    int[] limites = dividirEmBlocos(bytes);
+                    List<CompletableFuture<List<T>>> blocos = new ArrayList<>();
+                    for (int i = 0; i + 1 < limites.length; i++) {
+                        int de = limites[i];
+                        int ate = limites[i + 1];
+                        blocos.add(CompletableFuture.supplyAsync(
+                                () -> lerBloco(bytes, de, ate, leitor), executor));
+                    }
+                    return CompletableFuture.allOf(blocos.toArray(CompletableFuture[]::new))
+                            .thenApply(v -> {
+                                List<T> itens = new ArrayList<>();
+                                blocos.forEach(b -> itens.addAll(b.join()));
+                                return itens;
+                            });
+                });
+    }
+
+    private static ByteBuffer ler(File file) {
+        if (!file.exists()) {
+            return ByteBuffer.allocate(0);
+        }
+        try {
+            return CsvService.lerBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Nao da para achar um fim de registro a partir do meio do arquivo sem
+     * saber se ali se esta dentro de aspas, entao o arquivo e percorrido
+     * registro a registro ate cada limite (so quando ha mais de um bloco).
+     *
+     * @return posicoes de inicio de cada bloco, terminando com o tamanho do
+     *         arquivo. O primeiro bloco comeca depois do cabecalho.
+     */
+    private int[] dividirEmBlocos(ByteBuffer bytes) {
+        int tamanho = bytes.limit();
+        int inicio = fimDoRegistro(bytes, 0);
+        int blocos = Math.min(maxBlocos, Math.max(1, (tamanho - inicio) / TAMANHO_MINIMO_BLOCO));
+        int[] limites = new int[blocos + 1];
+        limites[0] = inicio;
+        int n = 1;
+        int pos = inicio;
+        for (int i = 1; i < blocos; i++) {
+            int alvo = inicio + (int) ((long) (tamanho - inicio) * i / blocos);
+            while (pos < alvo) {
+                pos = fimDoRegistro(bytes, pos);
+            }
+            if (pos > limites[n - 1] && pos < tamanho) {
+                limites[n++] = pos;
+            }
+        }
+        limites[n++] = tamanho;
+        return Arrays.copyOf(limites, n);
+    }
+
+    /**
+     * Segue a maquina de estados do {@link CsvTokenizer} nos bytes (aspas,
+     * virgula e quebra de linha sao ASCII, entao o charset nao importa).
+     *
+     * @param pos inicio de um registro
+     * @return posicao logo depois do '\n' que fecha o registro (ou o fim)
+     */
+    private static int fimDoRegistro(ByteBuffer bytes, int pos) {
+        int estado = INICIO_CAMPO;
+        while (pos < bytes.limit()) {
+            byte b = bytes.get(pos++);
+            if (estado == COM_ASPAS) {
+                if (b == '"') {
+                    estado = ASPAS_DENTRO;
+                }
+            } else if (b == '\n') {
+                return pos;
+            } else if (b == ',') {
+                estado = INICIO_CAMPO;
+            } else if (b == '"' && estado != SEM_ASPAS) {
+                estado = COM_ASPAS; // abre o campo, ou "" dentro dele
+            } else if (b != '\r') {
+                estado = SEM_ASPAS;
+            }
+        }
+        return pos;
+    }
+
+    private <T> List<T> lerBloco(ByteBuffer arquivo, int de, int ate, Function<CsvTokenizer.Campos, T> leitor) {
+        List<T> itens = new ArrayList<>();
+        CsvTokenizer tokenizer = new CsvTokenizer(decodificar(arquivo.slice(de, ate - de)));
+        CsvTokenizer.Campos campos = new CsvTokenizer.Campos();
+        try {
+            while (tokenizer.proximoRegistro(campos)) {
+                T item = leitor.apply(campos);
+                if (item != null) {
+                    itens.add(item);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return itens;
+    }
+
+    /**
+     * Decodifica os bytes sob demanda, um buffer do tokenizer por vez. Bytes
+     * invalidos viram o caractere de substituicao, como no FileReader.
+     */
+    private Readable decodificar(ByteBuffer bytes) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return destino -> {
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            int antes = destino.position();
+            decoder.decode(bytes, destino, true);
+            if (!bytes.hasRemaining()) {
+                decoder.flush(destino);
+            }
+            return destino.position() - antes;
+        };
+    }
+
+    private static void aguardar(CompletableFuture<?> tarefa) throws IOException {
+        try {
+            tarefa.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    // leitura de cada tipo de registro; retornam null para linhas incompletas
+
+    static Professor lerProfessor(CsvTokenizer.Campos campos) {
+        if (campos.tamanho() < 3) {
+            return null;
+        }
+        return new Professor(campos.get(0), campos.get(1), campos.get(2));
+    }
+
+    static Disciplina lerDisciplina(CsvTokenizer.Campos campos) {
+        if (campos.tamanho() < 4) {
+            return null;
+        }
+        List<String> prereqs = campos.isVazio(3) ? new ArrayList<>() : Arrays.asList(campos.get(3).split(";"));
+        return new Disciplina(campos.get(0), campos.get(1), campos.getInt(2), prereqs);
+    }
+
+    static Aluno lerAluno(CsvTokenizer.Campos campos) {
+        if (campos.tamanho() < 5) {
+            return null;
+        }
+        Aluno aluno;
+        if (campos.getBoolean(3)) {
+            aluno = new AlunoEspecial(campos.get(0), campos.get(1), campos.get(2));
+        } else {
+            aluno = new Aluno(campos.get(0), campos.get(1), campos.get(2), false);
+        }
+        aluno.setEmAfastamento(campos.getBoolean(4));
+        return aluno;
+    }
+
+    /**
+     * Monta a turma com seus alunos, mas nao a adiciona no registro (isso e feito
+     * depois, em ordem, na thread que chamou {@link #carregar}). Uma linha
+     * malformada e ignorada com uma mensagem, sem derrubar a carga.
+     */
+    static Turma lerTurma(CsvTokenizer.Campos campos, RegistroAcademico registro) {
+        if (campos.tamanho() < 10) {
+            return null;
+        }
+        Disciplina disciplina = registro.buscarDisciplina(campos.get(1));
+        Professor professor = registro.buscarProfessor(campos.get(2));
+        if (disciplina == null || professor == null) {
+            return null;
+        }
+
+        Turma turma;
+        try {
+            turma = new Turma(
+                    disciplina,
+                    campos.get(0),
+                    professor,
+                    campos.get(3),
+                    campos.get(4),
+                    campos.getBoolean(5),
+                    campos.isVazio(6) ? null : campos.get(6),
+                    campos.get(7),
+                    campos.getInt(8),
+                    campos.getInt(9));
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Turma ignorada (%s, %s): %s%n", campos.get(1), campos.get(0), e.getMessage());
+            return null;
+        }
+
+        if (campos.tamanho() >= 11 && !campos.isVazio(10)) {
+            Arrays.stream(campos.get(10).split(";"))
+                    .map(registro::buscarAluno)
+                    .filter(Objects::nonNull)
+                    .forEach(turma::matricularAluno);
+        }
+
+        if (campos.tamanho() >= 12 && !campos.isVazio(11)) {
+            Arrays.stream(campos.get(11).split(";"))
+                    .filter(s -> !s.isEmpty())
+                    .forEach(gradeData -> {
+                        String[] alunoGradeParts = gradeData.split(":");
+                        if (alunoGradeParts.length == 2) {
+                            Aluno aluno = registro.buscarAluno(alunoGradeParts[0]);
+                            if (aluno != null) {
+                                Arrays.stream(alunoGradeParts[1].split(","))
+                                        .forEach(gradeEntry -> {
+                                            String[] gradeParts = gradeEntry.split("=");
+                                            if (gradeParts.length == 2) {
+                                                try {
+                                                    double nota = Double.parseDouble(gradeParts[1]);
+                                                    turma.registrarNota(aluno, gradeParts[0], nota);
+                                                } catch (NumberFormatException e) {
+                                                    System.err.println("Formato de nota inválido: " + gradeEntry);
+                                                }
+                                            }
+                                        });
+                            }
+                        }
+                    });
+        }
+
+        if (campos.tamanho() >= 13 && !campos.isVazio(12)) {
+            Arrays.stream(campos.get(12).split(";"))
+                    .filter(s -> !s.isEmpty())
+                    .forEach(faltaData -> {
+                        String[] faltaParts = faltaData.split("=");
+                        if (faltaParts.length == 2) {
+                            Aluno aluno = registro.buscarAluno(faltaParts[0]);
+                            if (aluno != null) {
+                                try {
+                                    turma.definirFaltas(aluno, Integer.parseInt(faltaParts[1]));
+                                } catch (IllegalArgumentException e) {
+                                    System.err.println("Formato de falta inválido: " + faltaData);
+                                }
+                            }
+                        }
+                    });
+        }
+        return turma;
+    }
+
+    /**
+     * Notas e faltas de um aluno numa turma, lidas de uma linha de notas.csv.
+     * mapaFaltas e null em arquivos antigos, que so tem o total.
+     */
+    record LancamentoNotas(Turma turma, Aluno aluno, int faltas, Map<String, Double> notas, long[] mapaFaltas) {
+    }
+
+    static LancamentoNotas lerNotas(CsvTokenizer.Campos campos, RegistroAcademico registro) {
+        if (campos.tamanho() < 5) {
+            return null;
+        }
+        Turma turma = registro.buscarTurma(campos.get(0), campos.get(1));
+        Aluno aluno = registro.buscarAluno(campos.get(2));
+        if (turma == null || aluno == null) {
+            return null;
+        }
+
+        Map<String, Double> notas = new HashMap<>();
+        if (!campos.isVazio(4)) {
+            for (String nota : campos.get(4).split(";")) {
+                int separador = nota.lastIndexOf('=');
+                if (separador <= 0) {
+                    continue;
+                }
+                try {
+                    notas.put(nota.substring(0, separador), Double.parseDouble(nota.substring(separador + 1)));
+                } catch (NumberFormatException e) {
+                    System.err.println("Formato de nota inválido: " + nota);
+                }
+            }
+        }
+        try {
+            long[] mapaFaltas = campos.tamanho() >= 6
+                    ? MatrizPresenca.deHex(campos.get(5), turma.getTotalAulas())
+                    : null;
+            return new LancamentoNotas(turma, aluno, campos.getInt(3), notas, mapaFaltas);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Formato de falta inválido: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conjunto que mantem a ordem de insercao e da a cada elemento um slot: um
+ * inteiro pequeno e estavel enquanto o elemento estiver no conjunto. Os slots
+ * liberados por remocoes sao reaproveitados, entao ficam sempre abaixo de
+ * {@link #getTotalSlots()} e servem de indice para arrays paralelos.
+ *
+ * Inclusao, remocao, busca e consulta de slot sao O(1). Alteracoes so por
+ * {@link #adicionar} e {@link #remover}; o iterador nao remove.
+ *
+ * @param <E>
+ */
+public class ConjuntoIndexado<E> extends AbstractSet<E> {
+    private final Map<E, Integer> slots = new LinkedHashMap<>();
+    private final List<E> porSlot = new ArrayList<>();
+    private int[] livres = new int[4];
+    private int totalLivres;
+
+    /**
+     * @param elemento
+     * @return slot do elemento, ou -1 se ele ja estava no conjunto
+     */
+    public int adicionar(E elemento) {
+        if (slots.containsKey(elemento)) {
+            return -1;
+        }
+        int slot;
+        if (totalLivres > 0) {
+            slot = livres[--totalLivres];
+            porSlot.set(slot, elemento);
+        } else {
+            slot = porSlot.size();
+            porSlot.add(elemento);
+        }
+        slots.put(elemento, slot);
+        return slot;
+    }
+
+    /**
+     * @param elemento
+     * @return slot que o elemento ocupava, ou -1 se ele nao estava no conjunto
+     */
+    public int remover(E elemento) {
+        Integer slot = slots.remove(elemento);
+        if (slot == null) {
+            return -1;
+        }
+        porSlot.set(slot, null);
+        if (totalLivres == livres.length) {
+            livres = Arrays.copyOf(livres, livres.length * 2);
+        }
+        livres[totalLivres++] = slot;
+        return slot;
+    }
+
+    /**
+     * @param elemento
+     * @return slot do elemento, ou -1 se ele nao esta no conjunto
+     */
+    public int slot(Object elemento) {
+        Integer slot = slots.get(elemento);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @param slot
+     * @return elemento no slot, ou null se o slot esta livre
+     */
+    public E get(int slot) {
+        return porSlot.get(slot);
+    }
+
+    /**
+     * @return limite (exclusivo) dos slots ja usados; tamanho necessario para
+     *         um array indexado por slot
+     */
+    public int getTotalSlots() {
+        return porSlot.size();
+    }
+
+    @Override
+    public boolean contains(Object elemento) {
+        return slots.containsKey(elemento);
+    }
+
+    @Override
+    public int size() {
+        return slots.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableSet(slots.keySet()).iterator();
+    }
+}
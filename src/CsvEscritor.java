@@ -0,0 +1,230 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Escreve linhas CSV direto num {@link FileChannel}, passando por um buffer de
+ * caracteres reutilizado e um buffer de bytes grande. Os campos sao escritos
+ * aos pedacos ({@link #campo()} + {@code append}), e o escape de aspas e feito
+ * enquanto copia, sem {@code String.format} nem strings temporarias.
+ */
+public class CsvEscritor implements Appendable, Closeable {
+    private static final String FIM_DE_LINHA = System.lineSeparator(); // o mesmo do PrintWriter.println
+
+    private final FileChannel canal;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+    private boolean inicioDaLinha = true;
+
+    public CsvEscritor(FileChannel canal) {
+        this(canal, Charset.defaultCharset(), 1 << 16);
+    }
+
+    public CsvEscritor(FileChannel canal, Charset charset, int tamanhoBuffer) {
+        this.canal = canal;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(tamanhoBuffer);
+        this.bytes = ByteBuffer.allocateDirect((int) (tamanhoBuffer * encoder.maxBytesPerChar()));
+    }
+
+    /**
+     * Comeca um campo novo (escreve a virgula se nao for o primeiro da linha).
+     * O conteudo vem em seguida pelos {@code append}.
+     */
+    public CsvEscritor campo() throws IOException {
+        if (!inicioDaLinha) {
+            append(',');
+        }
+        inicioDaLinha = false;
+        return this;
+    }
+
+    public CsvEscritor campo(CharSequence valor) throws IOException {
+        return campo().append(valor);
+    }
+
+    public CsvEscritor campo(int valor) throws IOException {
+        return campo().append(valor);
+    }
+
+    /**
+     * Numero com casas decimais fixas e ponto como separador.
+     */
+    public CsvEscritor campo(double valor, int casas) throws IOException {
+        return campo().append(valor, casas);
+    }
+
+    public CsvEscritor campo(boolean valor) throws IOException {
+        return campo().append(valor ? "true" : "false");
+    }
+
+    /**
+     * Campo entre aspas, com as aspas internas duplicadas.
+     */
+    public CsvEscritor campoComAspas(CharSequence valor) throws IOException {
+        campo().append('"');
+        appendEscapado(valor);
+        return append('"');
+    }
+
+    /**
+     * Campo de texto livre: so usa aspas se o valor tem virgula, aspas ou
+     * quebra de linha. null vira campo vazio.
+     */
+    public CsvEscritor campoEscapado(CharSequence valor) throws IOException {
+        if (valor == null) {
+            return campo();
+        }
+        for (int i = 0, n = valor.length(); i < n; i++) {
+            char c = valor.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return campoComAspas(valor);
+            }
+        }
+        return campo(valor);
+    }
+
+    /**
+     * Copia o texto duplicando as aspas; usado dentro de um campo com aspas.
+     */
+    public CsvEscritor appendEscapado(CharSequence valor) throws IOException {
+        for (int i = 0, n = valor.length(); i < n; i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                append('"');
+            }
+            append(c);
+        }
+        return this;
+    }
+
+    public CsvEscritor append(int valor) throws IOException {
+        if (valor == Integer.MIN_VALUE) {
+            return append(Integer.toString(valor));
+        }
+        if (valor < 0) {
+            append('-');
+            valor = -valor;
+        }
+        int divisor = 1;
+        while (valor / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            append((char) ('0' + valor / divisor % 10));
+        }
+        return this;
+    }
+
+    public CsvEscritor append(double valor, int casas) throws IOException {
+        if (Double.isNaN(valor) || Double.isInfinite(valor) || Math.abs(valor) >= Integer.MAX_VALUE) {
+            return append(Double.toString(valor));
+        }
+        long escala = 1;
+        for (int i = 0; i < casas; i++) {
+            escala *= 10;
+        }
+        long inteiro = Math.round(Math.abs(valor) * escala);
+        if (valor < 0 && inteiro != 0) {
+            append('-');
+        }
+        append((int) (inteiro / escala));
+        if (casas > 0) {
+            append('.');
+            long resto = inteiro % escala;
+            for (long divisor = escala / 10; divisor > 0; divisor /= 10) {
+                append((char) ('0' + resto / divisor % 10));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public CsvEscritor append(CharSequence texto) throws IOException {
+        return append(texto, 0, texto.length());
+    }
+
+    @Override
+    public CsvEscritor append(CharSequence texto, int inicio, int fim) throws IOException {
+        for (int i = inicio; i < fim; i++) {
+            append(texto.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public CsvEscritor append(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            esvaziarChars(false);
+        }
+        chars.put(c);
+        return this;
+    }
+
+    /**
+     * Escreve uma linha pronta (ex: cabecalho) e termina a linha.
+     */
+    public void linha(CharSequence texto) throws IOException {
+        append(texto);
+        fimDaLinha();
+    }
+
+    public void fimDaLinha() throws IOException {
+        append(FIM_DE_LINHA);
+        inicioDaLinha = true;
+    }
+
+    /**
+     * Manda tudo o que esta nos buffers para o canal.
+     */
+    public void flush() throws IOException {
+        esvaziarChars(false);
+        escreverBytes();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            esvaziarChars(true);
+            escreverBytes();
+        } finally {
+            canal.close();
+        }
+    }
+
+    private void esvaziarChars(boolean fim) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult resultado = encoder.encode(chars, bytes, fim);
+            if (resultado.isOverflow()) {
+                escreverBytes();
+            } else {
+                break;
+            }
+        }
+        if (fim) {
+            while (encoder.flush(bytes).isOverflow()) {
+                escreverBytes();
+            }
+        }
+        // um surrogate sozinho no fim fica para a proxima rodada
+        chars.compact();
+    }
+
+    private void escreverBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            canal.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -1,27 +1,170 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class CsvService {
-    private static final String DATA_DIR = "data/";
+    static final String DATA_DIR = "data/";
 
     static {
         new File(DATA_DIR).mkdirs();
     }
 
+    /**
+     * Grava num arquivo temporario e so depois troca pelo arquivo final, para que
+     * uma queda no meio da gravacao nunca deixe um CSV pela metade.
+     */
     public static <T> void saveToCsv(String filename, List<T> items, CsvFormatter<T> formatter) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_DIR + filename))) {
+        saveToCsv(filename, items.iterator(), formatter);
+    }
+
+    /**
+     * Grava as linhas conforme o stream produz os itens, sem montar uma lista.
+     * O stream e percorrido em ordem e fechado no fim.
+     */
+    public static <T> void saveToCsv(String filename, Stream<? extends T> items, CsvFormatter<T> formatter)
+            throws IOException {
+        try (items) {
+            saveToCsv(filename, items.iterator(), formatter);
+        }
+    }
+
+    public static <T> void saveToCsv(String filename, Spliterator<? extends T> items, CsvFormatter<T> formatter)
+            throws IOException {
+        saveToCsv(filename, Spliterators.iterator(items), formatter);
+    }
+
+    public static <T> void saveToCsv(String filename, Iterator<? extends T> items, CsvFormatter<T> formatter)
+            throws IOException {
+        File destino = new File(DATA_DIR + filename);
+        File temporario = new File(DATA_DIR + filename + ".tmp");
+        try (CsvEscritor writer = new CsvEscritor(FileChannel.open(temporario.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+
+            writer.linha(formatter.getHeader());
+
+            while (items.hasNext()) {
+                formatter.format(items.next(), writer);
+                writer.fimDaLinha();
+            }
+        }
+        substituir(temporario, destino);
+    }
 
-            writer.println(formatter.getHeader());
+    /**
+     * Troca o destino pelo temporario de uma vez.
+     *
+     * @param temporario
+     * @param destino
+     * @throws IOException
+     */
+    static void substituir(File temporario, File destino) throws IOException {
+        Files.move(temporario.toPath(), destino.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 
-            for (T item : items) {
-                writer.println(formatter.format(item));
+    /**
+     * Le o arquivo inteiro para um buffer do heap, numa leitura do canal. O
+     * arquivo nao e mapeado em memoria: o Java nao tem como desfazer o
+     * mapeamento antes de o buffer ser coletado, e no Windows um arquivo
+     * mapeado nao pode ser substituido pelo salvamento ({@link #substituir}).
+     * Ao retornar o arquivo ja esta livre.
+     *
+     * @param file
+     * @return buffer do inicio ao fim do arquivo
+     * @throws IOException
+     */
+    static ByteBuffer lerBytes(File file) throws IOException {
+        try (FileChannel canal = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Arquivo grande demais para ler: " + file);
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) tamanho);
+            while (bytes.hasRemaining()) {
+                if (canal.read(bytes) < 0) {
+                    break;
+                }
             }
+            return bytes.flip();
+        }
+    }
+
+    /**
+     * Le o CSV sob demanda: cada registro so e lido quando o stream pede o
+     * proximo item. O cabecalho e pulado. O stream deve ser fechado (ex: com
+     * try-with-resources) para liberar o arquivo.
+     *
+     * @param filename
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    public static <T> Stream<T> lerCsv(String filename, CsvParser<T> parser) throws IOException {
+        Reader reader = new FileReader(DATA_DIR + filename);
+        CsvTokenizer tokenizer = new CsvTokenizer(reader);
+        CsvTokenizer.Campos campos = new CsvTokenizer.Campos();
+        try {
+            tokenizer.pularRegistro();
+        } catch (IOException e) {
+            reader.close();
+            throw e;
         }
+
+        Spliterator<T> registros = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> acao) {
+                try {
+                    while (tokenizer.proximoRegistro(campos)) {
+                        T item = parser.parse(campos);
+                        if (item != null) {
+                            acao.accept(item);
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(registros, false).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public static boolean exists(String filename) {
+        return new File(DATA_DIR + filename).exists();
     }
 
+    /**
+     * Escreve os campos de um item; a quebra de linha fica por conta de quem chama.
+     */
     public interface CsvFormatter<T> {
         String getHeader();
 
-        String format(T item);
+        void format(T item, CsvEscritor out) throws IOException;
+    }
+
+    /**
+     * Converte um registro lido em objeto; retorna null para pular o registro.
+     * Os campos so sao validos durante a chamada.
+     */
+    public interface CsvParser<T> {
+        T parse(CsvTokenizer.Campos campos);
     }
-}
\ No newline at end of file
+}
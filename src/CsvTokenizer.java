@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Leitor de CSV em maquina de estados. Le de qualquer {@link Readable}
+ * ({@code Reader}, {@code CharBuffer}) em blocos e entrega cada campo a um
+ * {@link CampoHandler}, sem regex e sem criar um array por linha.
+ *
+ * Aceita campos entre aspas com virgulas, quebras de linha e aspas duplicadas
+ * ({@code ""} vira {@code "}), que e o formato gravado pelos CsvFormatter.
+ */
+public class CsvTokenizer {
+    private static final int INICIO_CAMPO = 0;
+    private static final int SEM_ASPAS = 1;
+    private static final int COM_ASPAS = 2;
+    private static final int ASPAS_DENTRO = 3; // aspas lida dentro de campo com aspas
+
+    private final Readable origem;
+    private final CharBuffer buffer;
+    private final StringBuilder campo = new StringBuilder();
+    private boolean fimDaOrigem;
+
+    /**
+     * Recebe os campos de um registro. O {@code CharSequence} passado em
+     * {@link #campo} so e valido durante a chamada.
+     */
+    public interface CampoHandler {
+        void campo(int indice, CharSequence valor);
+
+        void fimDoRegistro(int totalCampos);
+    }
+
+    public CsvTokenizer(Readable origem) {
+        this(origem, 8192);
+    }
+
+    public CsvTokenizer(Readable origem, int tamanhoBuffer) {
+        this.origem = origem;
+        this.buffer = CharBuffer.allocate(tamanhoBuffer);
+        this.buffer.flip();
+    }
+
+    /**
+     * Le o proximo registro e entrega seus campos ao handler.
+     *
+     * @param handler
+     * @return false quando nao ha mais registros
+     * @throws IOException
+     */
+    public boolean proximoRegistro(CampoHandler handler) throws IOException {
+        int estado = INICIO_CAMPO;
+        int indice = 0;
+        boolean leuAlgo = false;
+        campo.setLength(0);
+
+        while (true) {
+            if (!buffer.hasRemaining() && !encherBuffer()) {
+                if (!leuAlgo) {
+                    return false;
+                }
+                handler.campo(indice, campo);
+                handler.fimDoRegistro(indice + 1);
+                return true;
+            }
+
+            char c = buffer.get();
+            leuAlgo = true;
+
+            switch (estado) {
+                case INICIO_CAMPO, SEM_ASPAS, ASPAS_DENTRO -> {
+                    if (c == ',') {
+                        handler.campo(indice++, campo);
+                        campo.setLength(0);
+                        estado = INICIO_CAMPO;
+                    } else if (c == '\n') {
+                        handler.campo(indice, campo);
+                        handler.fimDoRegistro(indice + 1);
+                        return true;
+                    } else if (c == '\r') {
+                        // CRLF: o '\n' seguinte fecha o registro
+                    } else if (c == '"' && estado == INICIO_CAMPO) {
+                        estado = COM_ASPAS;
+                    } else if (c == '"' && estado == ASPAS_DENTRO) {
+                        campo.append('"');
+                        estado = COM_ASPAS;
+                    } else {
+                        campo.append(c);
+                        estado = SEM_ASPAS;
+                    }
+                }
+                case COM_ASPAS -> {
+                    if (c == '"') {
+                        estado = ASPAS_DENTRO;
+                    } else {
+                        campo.append(c);
+                    }
+                }
+                default -> throw new IllegalStateException("Estado inválido: " + estado);
+            }
+        }
+    }
+
+    /**
+     * Descarta o proximo registro (ex: cabecalho).
+     *
+     * @return false se nao havia registro
+     * @throws IOException
+     */
+    public boolean pularRegistro() throws IOException {
+        return proximoRegistro(IGNORAR);
+    }
+
+    private boolean encherBuffer() throws IOException {
+        if (fimDaOrigem) {
+            return false;
+        }
+        buffer.clear();
+        int lidos;
+        do {
+            lidos = origem.read(buffer);
+        } while (lidos == 0);
+        buffer.flip();
+        if (lidos < 0) {
+            fimDaOrigem = true;
+            return false;
+        }
+        return true;
+    }
+
+    private static final CampoHandler IGNORAR = new CampoHandler() {
+        @Override
+        public void campo(int indice, CharSequence valor) {
+        }
+
+        @Override
+        public void fimDoRegistro(int totalCampos) {
+        }
+    };
+
+    /**
+     * Handler reutilizavel que guarda os campos do ultimo registro lido num
+     * unico buffer. So cria {@code String} quando {@link #get} e chamado;
+     * numeros e booleanos sao lidos direto do buffer.
+     */
+    public static class Campos implements CampoHandler {
+        private final StringBuilder dados = new StringBuilder();
+        private int[] fins = new int[16];
+        private int tamanho;
+        private boolean completo = true;
+
+        @Override
+        public void campo(int indice, CharSequence valor) {
+            if (completo) {
+                dados.setLength(0);
+                tamanho = 0;
+                completo = false;
+            }
+            if (tamanho == fins.length) {
+                fins = Arrays.copyOf(fins, tamanho * 2);
+            }
+            dados.append(valor);
+            fins[tamanho++] = dados.length();
+        }
+
+        @Override
+        public void fimDoRegistro(int totalCampos) {
+            completo = true;
+        }
+
+        public int tamanho() {
+            return tamanho;
+        }
+
+        public String get(int indice) {
+            return dados.substring(inicio(indice), fim(indice));
+        }
+
+        public boolean isVazio(int indice) {
+            return inicio(indice) == fim(indice);
+        }
+
+        public boolean getBoolean(int indice) {
+            return igualIgnorandoCaixa(indice, "true");
+        }
+
+        public boolean igualIgnorandoCaixa(int indice, String valor) {
+            int inicio = inicio(indice);
+            int fim = fim(indice);
+            if (fim - inicio != valor.length()) {
+                return false;
+            }
+            for (int i = 0; i < valor.length(); i++) {
+                if (Character.toLowerCase(dados.charAt(inicio + i)) != Character.toLowerCase(valor.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param indice
+         * @return
+         * @throws NumberFormatException se o campo nao for um inteiro
+         */
+        public int getInt(int indice) {
+            return Integer.parseInt(dados, inicio(indice), fim(indice), 10);
+        }
+
+        private int inicio(int indice) {
+            checarIndice(indice);
+            return indice == 0 ? 0 : fins[indice - 1];
+        }
+
+        private int fim(int indice) {
+            checarIndice(indice);
+            return fins[indice];
+        }
+
+        private void checarIndice(int indice) {
+            if (indice < 0 || indice >= tamanho) {
+                throw new IndexOutOfBoundsException("Campo " + indice + " de " + tamanho);
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+import java.io.IOException;
+
+/**
+ * Uma linha por aluno matriculado em cada turma, para exportar o desempenho
+ * de todos os alunos sem montar o relatorio inteiro na memoria.
+ */
+public class DesempenhoCsvFormatter implements CsvService.CsvFormatter<AlunoNaTurma> {
+    @Override
+    public String getHeader() {
+        return "matricula,nome,disciplinaCodigo,turmaCodigo,media,frequencia,faltas,situacao";
+    }
+
+    @Override
+    public void format(AlunoNaTurma linha, CsvEscritor out) throws IOException {
+        Turma turma = linha.turma();
+        Aluno aluno = linha.aluno();
+        out.campo(aluno.getMatricula())
+                .campoComAspas(aluno.getNome())
+                .campo(turma.getDisciplina().getCodigo())
+                .campo(turma.getCodigo())
+                .campo(turma.calcularMedia(aluno), 2)
+                .campo(turma.calcularFrequencia(aluno), 1)
+                .campo(turma.getFaltas(aluno))
+                .campo(turma.verificarAprovacao(aluno));
+    }
+}
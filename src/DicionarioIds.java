@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Da um id inteiro denso (0, 1, 2, ...) para cada texto, na ordem em que os
+ * textos aparecem. O id de um texto nunca muda enquanto o dicionario existir,
+ * mesmo que a entidade com aquela chave seja removida, entao os ids servem de
+ * indice em listas e arrays.
+ *
+ * Sincronizado: no modo servidor as sessoes consultam o dicionario enquanto
+ * outra cadastra.
+ */
+public class DicionarioIds {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> textos = new ArrayList<>();
+
+    /**
+     * @param texto
+     * @return id do texto, criando um novo se ainda nao existir
+     */
+    public synchronized int id(String texto) {
+        Integer id = ids.get(texto);
+        if (id == null) {
+            id = textos.size();
+            ids.put(texto, id);
+            textos.add(texto);
+        }
+        return id;
+    }
+
+    /**
+     * @param texto
+     * @return id do texto, ou -1 se ele nunca foi visto
+     */
+    public synchronized int buscar(String texto) {
+        Integer id = ids.get(texto);
+        return id == null ? -1 : id;
+    }
+
+    public synchronized String texto(int id) {
+        return textos.get(id);
+    }
+
+    public synchronized int tamanho() {
+        return textos.size();
+    }
+
+    public synchronized void limpar() {
+        ids.clear();
+        textos.clear();
+    }
+}
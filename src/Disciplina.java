@@ -1,7 +1,9 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 public class Disciplina {
@@ -9,7 +11,11 @@ public class Disciplina {
     private final String nome;
     private final int cargaHoraria;
     private final List<String> prerequisitos;
-    private final List<Turma> turmas = new ArrayList<>();
+    // copy-on-write: turmas mudam pouco e sao percorridas por varias sessoes
+    private final List<Turma> turmas = new CopyOnWriteArrayList<>();
+    private int id = -1;
+    private int[] idsPrerequisitos = new int[0];
+    private long[] bitsPrerequisitos = new long[0]; // bit = id do pre-requisito
 
     public Disciplina(String codigo, String nome, int cargaHoraria, List<String> prerequisitos) {
         if (codigo == null || codigo.isBlank()) {
@@ -26,7 +32,7 @@ public class Disciplina {
      * @param novaTurma
      * @return
      */
-    public boolean adicionarTurma(Turma novaTurma) {
+    public synchronized boolean adicionarTurma(Turma novaTurma) {
         Objects.requireNonNull(novaTurma, "Turma não pode ser nula");
 
         boolean conflitoHorario = turmas.stream()
@@ -43,37 +49,44 @@ public class Disciplina {
      * 
      * @param turma
      */
-    public void removerTurma(Turma turma) {
+    public synchronized void removerTurma(Turma turma) {
         turmas.remove(turma);
     }
 
     /**
-     * 
      * @param aluno
-     * @param disciplinasConcluidas
-     * @return
+     * @return true se o aluno concluiu todos os pre-requisitos diretos
      */
-    public boolean alunoPodeMatricular(Aluno aluno, List<String> disciplinasConcluidas) {
+    public boolean preRequisitosAtendidos(Aluno aluno) {
+        return aluno.concluiuTodas(bitsPrerequisitos);
+    }
 
-        if (!disciplinasConcluidas.containsAll(prerequisitos)) {
-            System.out.printf("Pré-requisitos faltantes: %s%n",
-                    prerequisitos.stream()
-                            .filter(p -> !disciplinasConcluidas.contains(p))
-                            .collect(Collectors.joining(", ")));
-            return false;
+    /**
+     * @param aluno
+     * @return por que o aluno nao pode se matricular na disciplina, ou null se
+     *         pode
+     */
+    public String impedimento(Aluno aluno) {
+
+        if (!preRequisitosAtendidos(aluno)) {
+            List<String> faltantes = new ArrayList<>();
+            for (int i = 0; i < idsPrerequisitos.length; i++) {
+                if (!aluno.isConcluida(idsPrerequisitos[i])) {
+                    faltantes.add(prerequisitos.get(i));
+                }
+            }
+            return "Pré-requisitos faltantes: " + String.join(", ", faltantes);
         }
 
         if (aluno instanceof AlunoEspecial) {
-            long matriculasAtuais = turmas.stream()
-                    .flatMap(t -> t.getAlunosMatriculados().stream())
-                    .filter(a -> a.equals(aluno))
+            long matriculasAtuais = aluno.getTurmas().stream()
+                    .filter(t -> t.getDisciplina() == this)
                     .count();
             if (matriculasAtuais >= 2) {
-                System.out.println("Aluno especial atingiu o limite de 2 disciplinas");
-                return false;
+                return "Aluno especial atingiu o limite de 2 disciplinas";
             }
         }
-        return true;
+        return null;
     }
 
     /**
@@ -92,6 +105,46 @@ public class Disciplina {
 
     // getters
 
+    /**
+     * @return id atribuido pelo {@link RegistroAcademico}, ou -1 se ainda nao
+     *         foi registrada
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return ids dos pre-requisitos, na mesma ordem de
+     *         {@link #getPrerequisitos()} (mesmo espaco de ids das disciplinas)
+     */
+    public int[] getIdsPrerequisitos() {
+        return idsPrerequisitos.clone();
+    }
+
+    /**
+     * @param indice
+     * @return id do pre-requisito na posicao indice, sem copiar o array
+     */
+    public int getIdPrerequisito(int indice) {
+        return idsPrerequisitos[indice];
+    }
+
+    void setIdsPrerequisitos(int[] ids) {
+        long[] bits = new long[0];
+        for (int id : ids) {
+            if ((id >>> 6) >= bits.length) {
+                bits = Arrays.copyOf(bits, (id >>> 6) + 1);
+            }
+            bits[id >>> 6] |= 1L << id;
+        }
+        this.idsPrerequisitos = ids;
+        this.bitsPrerequisitos = bits;
+    }
+
     public String getCodigo() {
         return codigo;
     }
@@ -123,7 +176,7 @@ public class Disciplina {
      */
     public int getTotalMatriculados() {
         return turmas.stream()
-                .mapToInt(t -> t.getAlunosMatriculados().size())
+                .mapToInt(Turma::getTotalMatriculados)
                 .sum();
     }
 
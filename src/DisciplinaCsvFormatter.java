@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.util.List;
+
 public class DisciplinaCsvFormatter implements CsvService.CsvFormatter<Disciplina> {
     @Override
     public String getHeader() {
@@ -5,11 +8,19 @@ public class DisciplinaCsvFormatter implements CsvService.CsvFormatter<Disciplin
     }
 
     @Override
-    public String format(Disciplina disciplina) {
-        return String.format("%s,\"%s\",%d,\"%s\"",
-                disciplina.getCodigo(),
-                disciplina.getNome().replace("\"", "\"\""),
-                disciplina.getCargaHoraria(),
-                String.join(";", disciplina.getPrerequisitos()));
+    public void format(Disciplina disciplina, CsvEscritor out) throws IOException {
+        out.campo(disciplina.getCodigo())
+                .campoComAspas(disciplina.getNome())
+                .campo(disciplina.getCargaHoraria());
+
+        List<String> prerequisitos = disciplina.getPrerequisitos();
+        out.campo().append('"');
+        for (int i = 0; i < prerequisitos.size(); i++) {
+            if (i > 0) {
+                out.append(';');
+            }
+            out.appendEscapado(prerequisitos.get(i));
+        }
+        out.append('"');
     }
 }
\ No newline at end of file
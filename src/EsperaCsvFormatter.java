@@ -0,0 +1,21 @@
+import java.io.IOException;
+
+/**
+ * Listas de espera, uma linha por aluno na fila. As linhas de cada turma vao na
+ * ordem da fila, entao a ordem de chegada e refeita na leitura.
+ */
+public class EsperaCsvFormatter implements CsvService.CsvFormatter<AlunoNaTurma> {
+    @Override
+    public String getHeader() {
+        return "disciplinaCodigo,turmaCodigo,alunoMatricula,prioridade";
+    }
+
+    @Override
+    public void format(AlunoNaTurma linha, CsvEscritor out) throws IOException {
+        Turma turma = linha.turma();
+        out.campo(turma.getDisciplina().getCodigo())
+                .campo(turma.getCodigo())
+                .campo(linha.aluno().getMatricula())
+                .campo(Double.toString(turma.getListaEspera().getPrioridade(linha.aluno())));
+    }
+}
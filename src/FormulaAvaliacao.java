@@ -0,0 +1,270 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metodo de avaliacao definido por uma formula, por exemplo
+ * {@code (P1+2*P2+3*P3)/6*0.8 + L*0.2}.
+ *
+ * A formula e compilada uma vez numa arvore de {@link MetodoAvaliacao} (um
+ * lambda por operacao), que le as notas direto da linha do aluno na
+ * {@link MatrizNotas}; avaliar nao cria objetos.
+ *
+ * Aceita:
+ * <ul>
+ * <li>as notas P1, P2, P3, L e S (nota ausente vale 0) e numeros com ponto
+ * decimal</li>
+ * <li>{@code + - * /}, parenteses e comparacoes {@code < <= > >= == !=}
+ * (valem 1 ou 0)</li>
+ * <li>{@code min(a, b, ...)} e {@code max(a, b, ...)}</li>
+ * <li>{@code se(condicao, valor, senao)}: condicao diferente de 0 escolhe
+ * valor</li>
+ * <li>{@code presente(X)}: 1 se a nota X foi lancada, 0 se nao</li>
+ * </ul>
+ *
+ * Ex.: nota substitutiva {@code se(presente(S), max(P3, S), P3)}.
+ */
+public final class FormulaAvaliacao implements MetodoAvaliacao {
+    private final String texto;
+    private final MetodoAvaliacao raiz;
+
+    private FormulaAvaliacao(String texto, MetodoAvaliacao raiz) {
+        this.texto = texto;
+        this.raiz = raiz;
+    }
+
+    /**
+     * @param texto
+     * @return a formula compilada
+     * @throws IllegalArgumentException se a formula e invalida
+     */
+    public static FormulaAvaliacao compilar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            throw new IllegalArgumentException("Fórmula vazia");
+        }
+        Leitor leitor = new Leitor(texto);
+        MetodoAvaliacao raiz = leitor.expressao();
+        leitor.pularEspacos();
+        if (leitor.pos < texto.length()) {
+            throw leitor.erro("caractere inesperado '" + texto.charAt(leitor.pos) + "'");
+        }
+        return new FormulaAvaliacao(texto, raiz);
+    }
+
+    public String getTexto() {
+        return texto;
+    }
+
+    /**
+     * Resultado que nao e um numero finito (divisao por zero) conta como 0.
+     */
+    @Override
+    public double media(double[] notas, int inicio) {
+        double media = raiz.media(notas, inicio);
+        return Double.isFinite(media) ? media : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return texto;
+    }
+
+    /**
+     * Parser descendente recursivo:
+     *
+     * <pre>
+     * expressao  = soma [ ("<" | "<=" | ">" | ">=" | "==" | "!=") soma ]
+     * soma       = termo { ("+" | "-") termo }
+     * termo      = fator { ("*" | "/") fator }
+     * fator      = "-" fator | numero | nota | funcao "(" argumentos ")" | "(" expressao ")"
+     * </pre>
+     */
+    private static final class Leitor {
+        private final String texto;
+        private int pos;
+
+        Leitor(String texto) {
+            this.texto = texto;
+        }
+
+        MetodoAvaliacao expressao() {
+            MetodoAvaliacao esq = soma();
+            pularEspacos();
+            String op = operadorComparacao();
+            if (op == null) {
+                return esq;
+            }
+            MetodoAvaliacao dir = soma();
+            return switch (op) {
+                case "<" -> (n, i) -> esq.media(n, i) < dir.media(n, i) ? 1.0 : 0.0;
+                case "<=" -> (n, i) -> esq.media(n, i) <= dir.media(n, i) ? 1.0 : 0.0;
+                case ">" -> (n, i) -> esq.media(n, i) > dir.media(n, i) ? 1.0 : 0.0;
+                case ">=" -> (n, i) -> esq.media(n, i) >= dir.media(n, i) ? 1.0 : 0.0;
+                case "==" -> (n, i) -> esq.media(n, i) == dir.media(n, i) ? 1.0 : 0.0;
+                default -> (n, i) -> esq.media(n, i) != dir.media(n, i) ? 1.0 : 0.0;
+            };
+        }
+
+        private String operadorComparacao() {
+            for (String op : new String[] { "<=", ">=", "==", "!=", "<", ">" }) {
+                if (texto.startsWith(op, pos)) {
+                    pos += op.length();
+                    return op;
+                }
+            }
+            return null;
+        }
+
+        private MetodoAvaliacao soma() {
+            MetodoAvaliacao resultado = termo();
+            while (true) {
+                if (consumir('+')) {
+                    MetodoAvaliacao esq = resultado, dir = termo();
+                    resultado = (n, i) -> esq.media(n, i) + dir.media(n, i);
+                } else if (consumir('-')) {
+                    MetodoAvaliacao esq = resultado, dir = termo();
+                    resultado = (n, i) -> esq.media(n, i) - dir.media(n, i);
+                } else {
+                    return resultado;
+                }
+            }
+        }
+
+        private MetodoAvaliacao termo() {
+            MetodoAvaliacao resultado = fator();
+            while (true) {
+                if (consumir('*')) {
+                    MetodoAvaliacao esq = resultado, dir = fator();
+                    resultado = (n, i) -> esq.media(n, i) * dir.media(n, i);
+                } else if (consumir('/')) {
+                    MetodoAvaliacao esq = resultado, dir = fator();
+                    resultado = (n, i) -> esq.media(n, i) / dir.media(n, i);
+                } else {
+                    return resultado;
+                }
+            }
+        }
+
+        private MetodoAvaliacao fator() {
+            if (consumir('-')) {
+                MetodoAvaliacao valor = fator();
+                return (n, i) -> -valor.media(n, i);
+            }
+            if (consumir('(')) {
+                MetodoAvaliacao valor = expressao();
+                esperar(')');
+                return valor;
+            }
+            pularEspacos();
+            if (pos < texto.length() && (Character.isDigit(texto.charAt(pos)) || texto.charAt(pos) == '.')) {
+                double valor = numero();
+                return (n, i) -> valor;
+            }
+            String nome = nome();
+            if (!consumir('(')) {
+                int ordinal = ordinalNota(nome);
+                return (n, i) -> {
+                    double nota = n[i + ordinal];
+                    return Double.isNaN(nota) ? 0.0 : nota;
+                };
+            }
+            return funcao(nome.toLowerCase());
+        }
+
+        private MetodoAvaliacao funcao(String nome) {
+            switch (nome) {
+                case "presente" -> {
+                    int ordinal = ordinalNota(nome());
+                    esperar(')');
+                    return (n, i) -> Double.isNaN(n[i + ordinal]) ? 0.0 : 1.0;
+                }
+                case "se" -> {
+                    MetodoAvaliacao condicao = expressao();
+                    esperar(',');
+                    MetodoAvaliacao entao = expressao();
+                    esperar(',');
+                    MetodoAvaliacao senao = expressao();
+                    esperar(')');
+                    return (n, i) -> condicao.media(n, i) != 0.0 ? entao.media(n, i) : senao.media(n, i);
+                }
+                case "min", "max" -> {
+                    List<MetodoAvaliacao> args = new ArrayList<>();
+                    do {
+                        args.add(expressao());
+                    } while (consumir(','));
+                    esperar(')');
+                    MetodoAvaliacao resultado = args.get(0);
+                    for (int k = 1; k < args.size(); k++) {
+                        MetodoAvaliacao esq = resultado, dir = args.get(k);
+                        resultado = nome.equals("min")
+                                ? (n, i) -> Math.min(esq.media(n, i), dir.media(n, i))
+                                : (n, i) -> Math.max(esq.media(n, i), dir.media(n, i));
+                    }
+                    return resultado;
+                }
+                default -> throw erro("função desconhecida '" + nome + "'");
+            }
+        }
+
+        private int ordinalNota(String nome) {
+            return switch (nome.toUpperCase()) {
+                case "P1" -> MatrizNotas.P1;
+                case "P2" -> MatrizNotas.P2;
+                case "P3" -> MatrizNotas.P3;
+                case "L" -> MatrizNotas.L;
+                case "S" -> MatrizNotas.S;
+                default -> throw erro("nota desconhecida '" + nome + "' (use P1, P2, P3, L ou S)");
+            };
+        }
+
+        private double numero() {
+            int inicio = pos;
+            while (pos < texto.length() && (Character.isDigit(texto.charAt(pos)) || texto.charAt(pos) == '.')) {
+                pos++;
+            }
+            try {
+                return Double.parseDouble(texto.substring(inicio, pos));
+            } catch (NumberFormatException e) {
+                pos = inicio;
+                throw erro("número inválido");
+            }
+        }
+
+        private String nome() {
+            pularEspacos();
+            int inicio = pos;
+            while (pos < texto.length() && Character.isLetterOrDigit(texto.charAt(pos))) {
+                pos++;
+            }
+            if (inicio == pos) {
+                throw erro(pos < texto.length() ? "caractere inesperado '" + texto.charAt(pos) + "'"
+                        : "fim inesperado");
+            }
+            return texto.substring(inicio, pos);
+        }
+
+        private boolean consumir(char c) {
+            pularEspacos();
+            if (pos < texto.length() && texto.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void esperar(char c) {
+            if (!consumir(c)) {
+                throw erro("esperado '" + c + "'");
+            }
+        }
+
+        void pularEspacos() {
+            while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException erro(String mensagem) {
+            return new IllegalArgumentException("Fórmula inválida: " + mensagem + " na posição " + (pos + 1));
+        }
+    }
+}
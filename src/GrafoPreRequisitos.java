@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Grafo de pre-requisitos das disciplinas, indexado pelo id da disciplina (ver
+ * {@link RegistroAcademico}). Montado de uma vez a partir das disciplinas
+ * cadastradas e depois so consultado; o registro monta um novo quando uma
+ * disciplina entra ou sai.
+ *
+ * Guarda, para cada disciplina, um bitset dos pre-requisitos diretos e outro
+ * de todos os pre-requisitos (fecho transitivo), alem de uma ordem topologica
+ * e das disciplinas que estao em ciclos.
+ */
+public class GrafoPreRequisitos {
+    private final int totalIds;
+    private final int palavras; // longs por bitset
+    private final long[] diretos;
+    private final long[] fecho;
+    private final int[] ordem;
+    private final long[] emCiclo;
+
+    /**
+     * @param disciplinas
+     * @param totalIds    limite (exclusivo) dos ids de disciplina, incluindo
+     *                    codigos so citados como pre-requisito
+     */
+    public GrafoPreRequisitos(Collection<Disciplina> disciplinas, int totalIds) {
+        this.totalIds = totalIds;
+        this.palavras = (totalIds + 63) >>> 6;
+        this.diretos = new long[totalIds * palavras];
+        this.fecho = new long[totalIds * palavras];
+        this.emCiclo = new long[palavras];
+
+        int[][] dependentes = new int[totalIds][];
+        int[] totalDependentes = new int[totalIds];
+        int[] pendentes = new int[totalIds]; // pre-requisitos ainda nao ordenados
+        for (Disciplina disciplina : disciplinas) {
+            int id = disciplina.getId();
+            for (int p : disciplina.getIdsPrerequisitos()) {
+                if (ligar(diretos, id, p)) {
+                    pendentes[id]++;
+                    if (dependentes[p] == null) {
+                        dependentes[p] = new int[2];
+                    } else if (totalDependentes[p] == dependentes[p].length) {
+                        dependentes[p] = Arrays.copyOf(dependentes[p], totalDependentes[p] * 2);
+                    }
+                    dependentes[p][totalDependentes[p]++] = id;
+                }
+            }
+        }
+
+        // Kahn: pre-requisitos antes de quem depende deles; o fecho de cada
+        // disciplina sai do fecho dos seus pre-requisitos diretos
+        int[] fila = new int[totalIds];
+        int fim = 0;
+        for (int id = 0; id < totalIds; id++) {
+            if (pendentes[id] == 0) {
+                fila[fim++] = id;
+            }
+        }
+        for (int inicio = 0; inicio < fim; inicio++) {
+            int id = fila[inicio];
+            for (int p = proximo(diretos, id, 0); p >= 0; p = proximo(diretos, id, p + 1)) {
+                ou(fecho, id, p);
+            }
+            for (int k = 0; k < totalDependentes[id]; k++) {
+                int dependente = dependentes[id][k];
+                if (--pendentes[dependente] == 0) {
+                    fila[fim++] = dependente;
+                }
+            }
+        }
+        this.ordem = Arrays.copyOf(fila, fim);
+
+        // o que sobrou esta num ciclo ou depende de um: fecho por busca
+        if (fim < totalIds) {
+            int[] pilha = new int[totalIds];
+            for (int id = 0; id < totalIds; id++) {
+                if (pendentes[id] == 0) {
+                    continue;
+                }
+                int topo = 0;
+                for (int p = proximo(diretos, id, 0); p >= 0; p = proximo(diretos, id, p + 1)) {
+                    pilha[topo++] = p;
+                    ligar(fecho, id, p);
+                }
+                while (topo > 0) {
+                    int atual = pilha[--topo];
+                    for (int p = proximo(diretos, atual, 0); p >= 0; p = proximo(diretos, atual, p + 1)) {
+                        if (ligar(fecho, id, p)) {
+                            pilha[topo++] = p;
+                        }
+                    }
+                }
+                if (contem(fecho, id, id)) {
+                    emCiclo[id >>> 6] |= 1L << id;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return ids das disciplinas fora de ciclos, cada uma depois de todos os
+     *         seus pre-requisitos
+     */
+    public int[] getOrdemTopologica() {
+        return ordem.clone();
+    }
+
+    public boolean possuiCiclo() {
+        for (long palavra : emCiclo) {
+            if (palavra != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param id
+     * @return true se a disciplina e pre-requisito (direto ou indireto) dela
+     *         mesma
+     */
+    public boolean isEmCiclo(int id) {
+        return id >= 0 && id < totalIds && (emCiclo[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * @param id
+     * @param idPreRequisito
+     * @return true se idPreRequisito e pre-requisito direto ou indireto de id
+     */
+    public boolean dependeDe(int id, int idPreRequisito) {
+        return id >= 0 && id < totalIds && idPreRequisito >= 0 && idPreRequisito < totalIds
+                && contem(fecho, id, idPreRequisito);
+    }
+
+    /**
+     * @param id
+     * @param idsPrerequisitos pre-requisitos propostos para a disciplina
+     * @return true se a disciplina passaria a depender dela mesma
+     */
+    public boolean formariaCiclo(int id, int[] idsPrerequisitos) {
+        for (int p : idsPrerequisitos) {
+            if (p == id || dependeDe(p, id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param id
+     * @return bitset dos pre-requisitos diretos (copia)
+     */
+    public long[] getPreRequisitosDiretos(int id) {
+        return linha(diretos, id);
+    }
+
+    /**
+     * @param id
+     * @return bitset de todos os pre-requisitos, diretos e indiretos (copia)
+     */
+    public long[] getPreRequisitosTransitivos(int id) {
+        return linha(fecho, id);
+    }
+
+    /**
+     * @param aluno
+     * @param id
+     * @return ids dos pre-requisitos (diretos e indiretos) que o aluno ainda
+     *         nao concluiu, na ordem em que devem ser cursados
+     */
+    public List<Integer> getFaltantes(Aluno aluno, int id) {
+        List<Integer> faltantes = new ArrayList<>();
+        if (id < 0 || id >= totalIds) {
+            return faltantes;
+        }
+        for (int p : ordem) {
+            if (contem(fecho, id, p) && !aluno.isConcluida(p)) {
+                faltantes.add(p);
+            }
+        }
+        // pre-requisitos em ciclo nao tem lugar na ordem
+        for (int p = proximo(fecho, id, 0); p >= 0; p = proximo(fecho, id, p + 1)) {
+            if (isEmCiclo(p) && !aluno.isConcluida(p)) {
+                faltantes.add(p);
+            }
+        }
+        return faltantes;
+    }
+
+    private long[] linha(long[] bits, int id) {
+        long[] linha = new long[palavras];
+        if (id >= 0 && id < totalIds) {
+            System.arraycopy(bits, id * palavras, linha, 0, palavras);
+        }
+        return linha;
+    }
+
+    // liga o bit de p na linha id; false se ja estava ligado
+    private boolean ligar(long[] bits, int id, int p) {
+        int i = id * palavras + (p >>> 6);
+        long antes = bits[i];
+        bits[i] = antes | (1L << p);
+        return bits[i] != antes;
+    }
+
+    private boolean contem(long[] bits, int id, int p) {
+        return (bits[id * palavras + (p >>> 6)] & (1L << p)) != 0;
+    }
+
+    // fecho[id] |= fecho[p] | {p}
+    private void ou(long[] bits, int id, int p) {
+        int destino = id * palavras;
+        int origem = p * palavras;
+        for (int i = 0; i < palavras; i++) {
+            bits[destino + i] |= bits[origem + i];
+        }
+        ligar(bits, id, p);
+    }
+
+    // proximo bit ligado da linha id a partir de p, ou -1
+    private int proximo(long[] bits, int id, int p) {
+        if (p >= totalIds) {
+            return -1;
+        }
+        int base = id * palavras;
+        int i = p >>> 6;
+        long palavra = bits[base + i] & (-1L << p);
+        while (true) {
+            if (palavra != 0) {
+                int bit = (i << 6) + Long.numberOfTrailingZeros(palavra);
+                return bit < totalIds ? bit : -1;
+            }
+            if (++i == palavras) {
+                return -1;
+            }
+            palavra = bits[base + i];
+        }
+    }
+}
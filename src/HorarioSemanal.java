@@ -0,0 +1,152 @@
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Horario de uma turma como bitmask da semana: 7 dias x 48 meias horas = 336
+ * bits em 6 longs. Dois horarios se chocam se o AND dos bits nao e zero.
+ *
+ * Formato aceito: um ou mais blocos separados por virgula ou ponto e virgula,
+ * cada um com dias separados por barra e um intervalo de horas, por exemplo
+ * {@code Seg 14h-16h}, {@code Seg/Qua 8h-10h}, {@code Ter 14h30-16h; Qui
+ * 10:00-12:00}. Texto fora desse formato vira um horario vazio, que nao se
+ * choca com nada (dados antigos com horario livre).
+ */
+public final class HorarioSemanal {
+    public static final int MEIAS_HORAS_POR_DIA = 48;
+    public static final int PALAVRAS = (7 * MEIAS_HORAS_POR_DIA + 63) >>> 6;
+    public static final HorarioSemanal VAZIO = new HorarioSemanal(new long[PALAVRAS]);
+
+    private static final String[] DIAS = { "dom", "seg", "ter", "qua", "qui", "sex", "sab" };
+    private static final String HORA = "(\\d{1,2})(?:[h:](\\d{2})?)?";
+    private static final Pattern BLOCO = Pattern.compile(
+            "([a-z]+(?:\\s*/\\s*[a-z]+)*)\\s+" + HORA + "\\s*-\\s*" + HORA + "h?");
+
+    private final long[] bits;
+
+    private HorarioSemanal(long[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * @param texto
+     * @return o horario, ou {@link #VAZIO} se o texto nao esta no formato
+     */
+    public static HorarioSemanal parse(String texto) {
+        try {
+            return ler(texto);
+        } catch (IllegalArgumentException e) {
+            return VAZIO;
+        }
+    }
+
+    /**
+     * @param texto
+     * @return o horario
+     * @throws IllegalArgumentException se o texto nao esta no formato
+     */
+    public static HorarioSemanal ler(String texto) {
+        if (texto == null || texto.isBlank()) {
+            throw new IllegalArgumentException("Horário vazio");
+        }
+        long[] bits = new long[PALAVRAS];
+        for (String bloco : normalizar(texto).split("[,;]")) {
+            Matcher m = BLOCO.matcher(bloco.trim());
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Horário inválido: " + bloco.trim() + " (ex: Seg 14h-16h)");
+            }
+            int inicio = minutos(m.group(2), m.group(3)) / 30;
+            int fim = (minutos(m.group(4), m.group(5)) + 29) / 30;
+            if (fim <= inicio || fim > MEIAS_HORAS_POR_DIA) {
+                throw new IllegalArgumentException("Intervalo de horas inválido: " + bloco.trim());
+            }
+            for (String dia : m.group(1).split("/")) {
+                int base = dia(dia.trim()) * MEIAS_HORAS_POR_DIA;
+                for (int i = base + inicio; i < base + fim; i++) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+        return new HorarioSemanal(bits);
+    }
+
+    private static String normalizar(String texto) {
+        return Normalizer.normalize(texto, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase();
+    }
+
+    private static int minutos(String horas, String minutos) {
+        int h = Integer.parseInt(horas);
+        int min = minutos == null ? 0 : Integer.parseInt(minutos);
+        if (h > 24 || min > 59 || (h == 24 && min > 0)) {
+            throw new IllegalArgumentException("Hora inválida: " + horas);
+        }
+        return h * 60 + min;
+    }
+
+    private static int dia(String nome) {
+        if (nome.length() >= 3) {
+            for (int i = 0; i < DIAS.length; i++) {
+                if (nome.startsWith(DIAS[i])) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Dia da semana inválido: " + nome);
+    }
+
+    public boolean isVazio() {
+        for (long palavra : bits) {
+            if (palavra != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return quantas meias horas por semana o horario ocupa
+     */
+    public int getTotalMeiasHoras() {
+        int total = 0;
+        for (long palavra : bits) {
+            total += Long.bitCount(palavra);
+        }
+        return total;
+    }
+
+    public boolean conflitaCom(HorarioSemanal outro) {
+        return intersecta(outro.bits);
+    }
+
+    /**
+     * @param ocupacao bitset no mesmo formato (ver {@link OcupacaoSemanal})
+     * @return true se algum bit do horario esta ligado na ocupacao
+     */
+    boolean intersecta(long[] ocupacao) {
+        for (int i = 0; i < PALAVRAS; i++) {
+            if ((bits[i] & ocupacao[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void somarEm(long[] ocupacao) {
+        for (int i = 0; i < PALAVRAS; i++) {
+            ocupacao[i] |= bits[i];
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HorarioSemanal h && Arrays.equals(bits, h.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bits);
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Diario de alteracoes gravado em {@code data/journal.log}. Cada alteracao feita
+ * pelos menus vira uma linha CSV acrescentada ao fim do arquivo, entao salvar
+ * custa proporcional a alteracao e nao ao tamanho dos dados.
+ *
+ * Na inicializacao as linhas sao reaplicadas sobre o que foi carregado do
+ * snapshot/CSV. A compactacao (salvar tudo e esvaziar o diario) acontece no
+ * "Salvar e Sair" e automaticamente a cada {@link #LIMITE_COMPACTACAO} entradas.
+ *
+ * Todas as entradas sao idempotentes (gravam o valor final, nao o incremento),
+ * para que reaplicar o diario sobre uma base que ja contem as alteracoes, por
+ * exemplo depois de uma queda no meio da compactacao, nao mude o resultado.
+ *
+ * As sessoes do modo servidor gravam no mesmo diario; cada linha e gravada
+ * inteira, sob o monitor do journal. Para a ordem das linhas ser a ordem real
+ * das alteracoes, o journal e chamado de dentro da secao critica de cada uma:
+ * pela turma ({@link Turma.Movimentos}), pelo registro (inclusoes e salas) ou
+ * com o monitor do aluno (edicao e trancamento de semestre). Promocoes da
+ * lista de espera tem linha propria e nao sao refeitas ao reaplicar uma
+ * saida.
+ */
+public class JournalMutacoes implements AutoCloseable, Turma.Movimentos {
+    public static final String ARQUIVO = "journal.log";
+    public static final int LIMITE_COMPACTACAO = 10_000;
+
+    private static final String ALUNO = "ALUNO";
+    private static final String ALUNO_EDITADO = "ALUNO_EDITADO";
+    private static final String AFASTAMENTO = "AFASTAMENTO";
+    private static final String PROFESSOR = "PROFESSOR";
+    private static final String DISCIPLINA = "DISCIPLINA";
+    private static final String TURMA = "TURMA";
+    private static final String MATRICULA = "MATRICULA";
+    private static final String TRANCAMENTO = "TRANCAMENTO";
+    private static final String PROMOCAO = "PROMOCAO";
+    private static final String NOTA = "NOTA";
+    private static final String FALTAS = "FALTAS";
+    private static final String CHAMADA = "CHAMADA";
+    private static final String SALA = "SALA";
+    private static final String ESPERA = "ESPERA";
+    private static final String SAIDA_ESPERA = "SAIDA_ESPERA";
+
+    private final File file;
+    private CsvEscritor writer;
+    private int entradas;
+    private boolean falhou;
+
+    public JournalMutacoes() {
+        this(new File(CsvService.DATA_DIR + ARQUIVO));
+    }
+
+    public JournalMutacoes(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reaplica as entradas do diario no registro.
+     *
+     * @param registro
+     * @return numero de entradas aplicadas
+     * @throws IOException
+     */
+    public int reaplicar(RegistroAcademico registro) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int aplicadas = 0;
+        try (Reader reader = new FileReader(file)) {
+            CsvTokenizer tokenizer = new CsvTokenizer(reader);
+            CsvTokenizer.Campos campos = new CsvTokenizer.Campos();
+            while (tokenizer.proximoRegistro(campos)) {
+                entradas++;
+                try {
+                    if (aplicar(campos, registro)) {
+                        aplicadas++;
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Entrada do journal ignorada: " + e.getMessage());
+                }
+            }
+        }
+        return aplicadas;
+    }
+
+    private boolean aplicar(CsvTokenizer.Campos c, RegistroAcademico registro) {
+        switch (c.get(0)) {
+            case ALUNO -> {
+                Aluno aluno = c.getBoolean(4)
+                        ? new AlunoEspecial(c.get(1), c.get(2), c.get(3))
+                        : new Aluno(c.get(1), c.get(2), c.get(3), false);
+                return registro.adicionarAluno(aluno);
+            }
+            case ALUNO_EDITADO -> {
+                Aluno aluno = registro.buscarAluno(c.get(1));
+                if (aluno == null) {
+                    return false;
+                }
+                aluno.setNome(c.get(2));
+                aluno.setCurso(c.get(3));
+                return true;
+            }
+            case AFASTAMENTO -> {
+                Aluno aluno = registro.buscarAluno(c.get(1));
+                if (aluno == null) {
+                    return false;
+                }
+                aluno.setEmAfastamento(c.getBoolean(2));
+                return true;
+            }
+            case PROFESSOR -> {
+                return registro.adicionarProfessor(new Professor(c.get(1), c.get(2), c.get(3)));
+            }
+            case DISCIPLINA -> {
+                List<String> prereqs = c.isVazio(4) ? new ArrayList<>() : Arrays.asList(c.get(4).split(";"));
+                return registro.adicionarDisciplina(new Disciplina(c.get(1), c.get(2), c.getInt(3), prereqs));
+            }
+            case TURMA -> {
+                Disciplina disciplina = registro.buscarDisciplina(c.get(2));
+                Professor professor = registro.buscarProfessor(c.get(3));
+                if (disciplina == null || professor == null) {
+                    return false;
+                }
+                return registro.adicionarTurma(new Turma(disciplina, c.get(1), professor, c.get(4), c.get(5),
+                        c.getBoolean(6), c.isVazio(7) ? null : c.get(7), c.get(8), c.getInt(9), c.getInt(10)));
+            }
+            case MATRICULA -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                Aluno aluno = registro.buscarAluno(c.get(3));
+                if (turma == null || aluno == null || turma.isMatriculado(aluno)) {
+                    return false;
+                }
+                return turma.matricularAluno(aluno);
+            }
+            case TRANCAMENTO -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                Aluno aluno = registro.buscarAluno(c.get(3));
+                if (turma == null || aluno == null) {
+                    return false;
+                }
+                // quem ocupou a vaga vem na linha PROMOCAO seguinte
+                turma.removerSemPromover(aluno);
+                return true;
+            }
+            case PROMOCAO -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                Aluno aluno = registro.buscarAluno(c.get(3));
+                if (turma == null || aluno == null || turma.isMatriculado(aluno)) {
+                    return false;
+                }
+                return turma.matricularAluno(aluno); // ja tira da lista de espera
+            }
+            case ESPERA -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                Aluno aluno = registro.buscarAluno(c.get(3));
+                if (turma == null || aluno == null || turma.isMatriculado(aluno)) {
+                    return false;
+                }
+                return turma.getListaEspera().entrar(aluno, Double.parseDouble(c.get(4)));
+            }
+            case SAIDA_ESPERA -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                Aluno aluno = registro.buscarAluno(c.get(3));
+                if (turma == null || aluno == null) {
+                    return false;
+                }
+                return turma.getListaEspera().sair(aluno);
+            }
+            case NOTA -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                Aluno aluno = registro.buscarAluno(c.get(3));
+                if (turma == null || aluno == null) {
+                    return false;
+                }
+                turma.registrarNota(aluno, c.get(4), Double.parseDouble(c.get(5)));
+                return true;
+            }
+            case FALTAS -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                Aluno aluno = registro.buscarAluno(c.get(3));
+                if (turma == null || aluno == null) {
+                    return false;
+                }
+                if (c.tamanho() >= 6) {
+                    turma.definirMapaFaltas(aluno, MatrizPresenca.deHex(c.get(5), turma.getTotalAulas()));
+                } else {
+                    turma.definirFaltas(aluno, c.getInt(4));
+                }
+                return true;
+            }
+            case CHAMADA -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                if (turma == null) {
+                    return false;
+                }
+                List<Aluno> ausentes = new ArrayList<>();
+                if (!c.isVazio(4)) {
+                    for (String matricula : c.get(4).split(";")) {
+                        Aluno aluno = registro.buscarAluno(matricula);
+                        if (aluno != null && turma.isMatriculado(aluno)) {
+                            ausentes.add(aluno);
+                        }
+                    }
+                }
+                turma.registrarChamada(c.getInt(3), ausentes);
+                return true;
+            }
+            case SALA -> {
+                Turma turma = registro.buscarTurma(c.get(1), c.get(2));
+                if (turma == null || !turma.isPresencial()) {
+                    return false;
+                }
+                registro.definirSala(turma, c.get(3));
+                return true;
+            }
+            default -> {
+                System.err.println("Tipo de entrada desconhecido no journal: " + c.get(0));
+                return false;
+            }
+        }
+    }
+
+    // registro das alteracoes
+
+    public void alunoCadastrado(Aluno aluno) {
+        gravar(ALUNO, aluno.getNome(), aluno.getMatricula(), aluno.getCurso(), String.valueOf(aluno.isEspecial()));
+    }
+
+    public void alunoEditado(Aluno aluno) {
+        gravar(ALUNO_EDITADO, aluno.getMatricula(), aluno.getNome(), aluno.getCurso());
+    }
+
+    public void afastamentoAlterado(Aluno aluno) {
+        gravar(AFASTAMENTO, aluno.getMatricula(), String.valueOf(aluno.isEmAfastamento()));
+    }
+
+    public void professorCadastrado(Professor professor) {
+        gravar(PROFESSOR, professor.getMatricula(), professor.getNome(), professor.getDepartamento());
+    }
+
+    public void disciplinaCadastrada(Disciplina disciplina) {
+        gravar(DISCIPLINA, disciplina.getCodigo(), disciplina.getNome(),
+                String.valueOf(disciplina.getCargaHoraria()), String.join(";", disciplina.getPrerequisitos()));
+    }
+
+    public void turmaCriada(Turma turma) {
+        gravar(TURMA, turma.getCodigo(), turma.getDisciplina().getCodigo(), turma.getProfessor().getMatricula(),
+                turma.getSemestre(), turma.getMetodoAvaliacao(), String.valueOf(turma.isPresencial()),
+                turma.getSala() != null ? turma.getSala() : "", turma.getHorario(),
+                String.valueOf(turma.getCapacidadeMaxima()), String.valueOf(turma.getTotalAulas()));
+    }
+
+    @Override
+    public void alunoMatriculado(Turma turma, Aluno aluno) {
+        gravar(MATRICULA, turma.getDisciplina().getCodigo(), turma.getCodigo(), aluno.getMatricula());
+    }
+
+    @Override
+    public void alunoRemovido(Turma turma, Aluno aluno) {
+        gravar(TRANCAMENTO, turma.getDisciplina().getCodigo(), turma.getCodigo(), aluno.getMatricula());
+    }
+
+    @Override
+    public void alunoPromovido(Turma turma, Aluno aluno) {
+        gravar(PROMOCAO, turma.getDisciplina().getCodigo(), turma.getCodigo(), aluno.getMatricula());
+    }
+
+    @Override
+    public void entrouNaEspera(Turma turma, Aluno aluno, double prioridade) {
+        gravar(ESPERA, turma.getDisciplina().getCodigo(), turma.getCodigo(), aluno.getMatricula(),
+                String.valueOf(prioridade));
+    }
+
+    @Override
+    public void saiuDaEspera(Turma turma, Aluno aluno) {
+        gravar(SAIDA_ESPERA, turma.getDisciplina().getCodigo(), turma.getCodigo(), aluno.getMatricula());
+    }
+
+    @Override
+    public void notaRegistrada(Turma turma, Aluno aluno, String tipoAvaliacao, double nota) {
+        gravar(NOTA, turma.getDisciplina().getCodigo(), turma.getCodigo(), aluno.getMatricula(),
+                tipoAvaliacao, String.valueOf(nota));
+    }
+
+    @Override
+    public void faltasRegistradas(Turma turma, Aluno aluno) {
+        gravar(FALTAS, turma.getDisciplina().getCodigo(), turma.getCodigo(), aluno.getMatricula(),
+                String.valueOf(turma.getFaltas(aluno)), MatrizPresenca.paraHex(turma.getMapaFaltas(aluno)));
+    }
+
+    @Override
+    public void chamadaRegistrada(Turma turma, int aula, Collection<Aluno> ausentes) {
+        gravar(CHAMADA, turma.getDisciplina().getCodigo(), turma.getCodigo(), String.valueOf(aula),
+                ausentes.stream().map(Aluno::getMatricula).collect(Collectors.joining(";")));
+    }
+
+    public void salaDefinida(Turma turma) {
+        gravar(SALA, turma.getDisciplina().getCodigo(), turma.getCodigo(), turma.getSala());
+    }
+
+    /**
+     * @return true quando o diario ficou grande o bastante para valer a pena
+     *         salvar tudo e recomecar, ou quando uma entrada nao pode ser
+     *         gravada (so salvar tudo guarda aquela alteracao)
+     */
+    public synchronized boolean precisaCompactar() {
+        return falhou || entradas >= LIMITE_COMPACTACAO;
+    }
+
+    /**
+     * Esvazia o diario. Deve ser chamado so depois que a base (CSV/snapshot) foi
+     * gravada com sucesso.
+     *
+     * @throws IOException
+     */
+    public synchronized void limpar() throws IOException {
+        close();
+        new FileWriter(file, false).close();
+        entradas = 0;
+        falhou = false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private synchronized void gravar(String tipo, String... campos) {
+        try {
+            if (writer == null) {
+                writer = new CsvEscritor(FileChannel.open(file.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+            }
+            writer.campo(tipo);
+            for (String campo : campos) {
+                writer.campoComAspas(campo);
+            }
+            writer.fimDaLinha();
+            writer.flush();
+            entradas++;
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar journal: " + e.getMessage());
+            // a linha pode ter ficado pela metade; reabre na proxima e salva tudo
+            falhou = true;
+            try {
+                close();
+            } catch (IOException ignorada) {
+                writer = null;
+            }
+        }
+    }
+}
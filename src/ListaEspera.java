@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Lista de espera de uma turma lotada. A ordem e por prioridade (maior
+ * primeiro) e, entre prioridades iguais, por chegada: com a mesma prioridade
+ * para todos e uma fila FIFO. A prioridade de cada aluno e fixada quando ele
+ * entra na fila.
+ *
+ * A fila e um {@link ConcurrentSkipListSet}, entao entrar, sair e percorrer em
+ * ordem nao precisam de trava; um mapa aluno -> entrada evita duplicatas e
+ * permite tirar um aluno do meio da fila. Quem promove o proximo aluno e a
+ * {@link Turma}, ao liberar uma vaga.
+ */
+public class ListaEspera {
+    /**
+     * @param aluno
+     * @param prioridade maior sai primeiro
+     * @param chegada    desempate: menor sai primeiro
+     */
+    public record Entrada(Aluno aluno, double prioridade, long chegada) {
+    }
+
+    private static final Comparator<Entrada> ORDEM = Comparator.comparingDouble(Entrada::prioridade).reversed()
+            .thenComparingLong(Entrada::chegada);
+
+    private final ConcurrentSkipListSet<Entrada> fila = new ConcurrentSkipListSet<>(ORDEM);
+    private final ConcurrentHashMap<Aluno, Entrada> entradas = new ConcurrentHashMap<>();
+    private final AtomicLong chegadas = new AtomicLong();
+    private volatile boolean alterada; // mudou desde o ultimo salvamento
+
+    /**
+     * @param aluno
+     * @param prioridade
+     * @return false se o aluno ja esta na fila
+     */
+    public boolean entrar(Aluno aluno, double prioridade) {
+        Entrada entrada = new Entrada(aluno, prioridade, chegadas.getAndIncrement());
+        if (entradas.putIfAbsent(aluno, entrada) != null) {
+            return false;
+        }
+        fila.add(entrada);
+        alterada = true;
+        return true;
+    }
+
+    /**
+     * @param aluno
+     * @return false se o aluno nao estava na fila
+     */
+    public boolean sair(Aluno aluno) {
+        Entrada entrada = entradas.remove(aluno);
+        if (entrada == null) {
+            return false;
+        }
+        fila.remove(entrada);
+        alterada = true;
+        return true;
+    }
+
+    /**
+     * Tira da fila o primeiro aluno que pode ocupar a vaga. Quem nao pode
+     * (choque de horario, pre-requisito...) continua na fila, no mesmo lugar.
+     *
+     * @param podeEntrar checa o aluno e ja o poe na turma se ele pode entrar;
+     *                   a turma chama com a trava de escrita, entao a entrada
+     *                   ainda esta na fila quando ele devolve true
+     * @return o aluno promovido, ou null se ninguem na fila pode entrar
+     */
+    Aluno promover(Predicate<Aluno> podeEntrar) {
+        for (Entrada entrada : fila) {
+            if (entradas.get(entrada.aluno()) != entrada) {
+                fila.remove(entrada); // sobra de um sair() concorrente com entrar()
+            } else if (podeEntrar.test(entrada.aluno()) && entradas.remove(entrada.aluno(), entrada)) {
+                fila.remove(entrada);
+                alterada = true;
+                return entrada.aluno();
+            }
+        }
+        return null;
+    }
+
+    public boolean contem(Aluno aluno) {
+        return entradas.containsKey(aluno);
+    }
+
+    /**
+     * @param aluno
+     * @return prioridade com que o aluno entrou na fila, ou NaN se nao esta nela
+     */
+    public double getPrioridade(Aluno aluno) {
+        Entrada entrada = entradas.get(aluno);
+        return entrada == null ? Double.NaN : entrada.prioridade();
+    }
+
+    /**
+     * @param aluno
+     * @return posicao do aluno na fila (1 = proximo), ou 0 se nao esta nela
+     */
+    public int getPosicao(Aluno aluno) {
+        Entrada procurada = entradas.get(aluno);
+        if (procurada == null) {
+            return 0;
+        }
+        return fila.headSet(procurada).size() + 1;
+    }
+
+    public int getTamanho() {
+        return entradas.size();
+    }
+
+    public boolean isVazia() {
+        return entradas.isEmpty();
+    }
+
+    /**
+     * @return entradas na ordem da fila
+     */
+    public List<Entrada> getEntradas() {
+        List<Entrada> emOrdem = new ArrayList<>(fila.size());
+        for (Entrada entrada : fila) {
+            if (entradas.get(entrada.aluno()) == entrada) {
+                emOrdem.add(entrada);
+            }
+        }
+        return emOrdem;
+    }
+
+    public boolean isAlterada() {
+        return alterada;
+    }
+
+    public void marcarSalva() {
+        alterada = false;
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Matricula em lote a partir de um arquivo de pedidos, com as mesmas regras da
+ * matricula pelo menu: semestre trancado, limite do aluno especial,
+ * pre-requisitos, choque de horario e vagas.
+ *
+ * Arquivo (com cabecalho): {@code matricula,disciplina,turmas}, uma linha por
+ * disciplina pedida. {@code turmas} sao os codigos aceitos em ordem de
+ * preferencia separados por ';' (vazio = qualquer turma da disciplina). As
+ * linhas de um aluno estao na ordem de prioridade dele.
+ *
+ * Os pedidos sao atendidos em rodadas: a rodada k tem o k-esimo pedido de cada
+ * aluno, entao ninguem leva o segundo pedido antes de todos tentarem o
+ * primeiro. Numa rodada os pedidos sao agrupados por disciplina e cada
+ * disciplina e atendida por uma tarefa, na ordem de prioridade dos alunos.
+ * Como as turmas so pertencem a uma disciplina e cada aluno tem no maximo um
+ * pedido por rodada, as tarefas nao disputam vaga nem aluno e o resultado nao
+ * depende do numero de threads.
+ */
+public class MatriculaEmLote {
+    public static final String MATRICULADO = Turma.MATRICULADO;
+
+    public record Pedido(String matricula, String disciplina, List<String> turmas) {
+    }
+
+    /**
+     * @param pedido
+     * @param turma    turma em que o aluno ficou, ou null
+     * @param situacao {@link #MATRICULADO} ou o motivo da recusa
+     */
+    public record Resultado(Pedido pedido, Turma turma, String situacao) {
+        public boolean isMatriculado() {
+            return turma != null;
+        }
+    }
+
+    private final RegistroAcademico registro;
+    private final ExecutorService executor;
+    private final Turma.Movimentos movimentos;
+
+    public MatriculaEmLote(RegistroAcademico registro, ExecutorService executor) {
+        this(registro, executor, Turma.Movimentos.NENHUM);
+    }
+
+    /**
+     * @param registro
+     * @param executor
+     * @param movimentos avisado de cada matricula feita (o journal)
+     */
+    public MatriculaEmLote(RegistroAcademico registro, ExecutorService executor, Turma.Movimentos movimentos) {
+        this.registro = registro;
+        this.executor = executor;
+        this.movimentos = movimentos;
+    }
+
+    /**
+     * @param arquivo nome do arquivo dentro da pasta de dados
+     * @return pedidos na ordem do arquivo; linhas sem matricula ou disciplina
+     *         sao ignoradas
+     * @throws IOException
+     */
+    public static List<Pedido> lerPedidos(String arquivo) throws IOException {
+        try (Stream<Pedido> pedidos = CsvService.lerCsv(arquivo, c -> {
+            if (c.tamanho() < 2 || c.isVazio(0) || c.isVazio(1)) {
+                return null;
+            }
+            List<String> turmas = c.tamanho() < 3 ? List.of()
+                    : Arrays.stream(c.get(2).split(";"))
+                            .map(String::trim)
+                            .filter(t -> !t.isEmpty())
+                            .collect(Collectors.toList());
+            return new Pedido(c.get(0).trim(), c.get(1).trim(), turmas);
+        })) {
+            return pedidos.collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Alunos com maior IRA primeiro. O IRA e a media das medias nas turmas com
+     * notas lancadas, ponderada pela carga horaria; e calculado uma vez por
+     * aluno.
+     *
+     * @param alunos alunos que serao comparados
+     * @return
+     */
+    public static Comparator<Aluno> porIra(Collection<Aluno> alunos) {
+        Map<Aluno, Double> ira = alunos.parallelStream()
+                .distinct()
+                .collect(Collectors.toConcurrentMap(a -> a, MatriculaEmLote::calcularIra));
+        return Comparator.comparingDouble((Aluno a) -> ira.getOrDefault(a, 0.0)).reversed();
+    }
+
+    /**
+     * @param curso
+     * @return alunos do curso primeiro
+     */
+    public static Comparator<Aluno> porCurso(String curso) {
+        return Comparator.comparing((Aluno a) -> !curso.equalsIgnoreCase(a.getCurso()));
+    }
+
+    public static double calcularIra(Aluno aluno) {
+        double soma = 0.0;
+        int cargaTotal = 0;
+        for (Turma turma : aluno.getTurmas()) {
+            if (turma.possuiNotas(aluno)) {
+                int carga = turma.getDisciplina().getCargaHoraria();
+                soma += turma.calcularMedia(aluno) * carga;
+                cargaTotal += carga;
+            }
+        }
+        return cargaTotal == 0 ? 0.0 : soma / cargaTotal;
+    }
+
+    /**
+     * Atende os pedidos e matricula os alunos.
+     *
+     * @param pedidos
+     * @param prioridade ordem dos alunos na disputa por vaga; empates seguem a
+     *                   ordem do arquivo
+     * @return um resultado por pedido, na ordem dos pedidos
+     * @throws InterruptedException
+     */
+    public List<Resultado> processar(List<Pedido> pedidos, Comparator<Aluno> prioridade)
+            throws InterruptedException {
+        Resultado[] resultados = new Resultado[pedidos.size()];
+        Aluno[] alunos = new Aluno[pedidos.size()];
+        Disciplina[] disciplinas = new Disciplina[pedidos.size()];
+        Map<Aluno, Integer> pedidosPorAluno = new LinkedHashMap<>();
+        List<List<Integer>> rodadas = new ArrayList<>();
+
+        for (int i = 0; i < pedidos.size(); i++) {
+            Pedido pedido = pedidos.get(i);
+            alunos[i] = registro.buscarAluno(pedido.matricula());
+            disciplinas[i] = registro.buscarDisciplina(pedido.disciplina());
+            if (alunos[i] == null) {
+                resultados[i] = new Resultado(pedido, null, "Aluno não encontrado");
+            } else if (disciplinas[i] == null) {
+                resultados[i] = new Resultado(pedido, null, "Disciplina não encontrada");
+            } else {
+                int rodada = pedidosPorAluno.merge(alunos[i], 1, Integer::sum) - 1;
+                if (rodada == rodadas.size()) {
+                    rodadas.add(new ArrayList<>());
+                }
+                rodadas.get(rodada).add(i);
+            }
+        }
+
+        List<Aluno> ordem = new ArrayList<>(pedidosPorAluno.keySet());
+        ordem.sort(prioridade); // estavel: empates ficam na ordem do arquivo
+        Map<Aluno, Integer> posicao = new HashMap<>();
+        for (int i = 0; i < ordem.size(); i++) {
+            posicao.put(ordem.get(i), i);
+        }
+
+        for (List<Integer> rodada : rodadas) {
+            Map<Disciplina, List<Integer>> porDisciplina = new LinkedHashMap<>();
+            for (int i : rodada) {
+                porDisciplina.computeIfAbsent(disciplinas[i], d -> new ArrayList<>()).add(i);
+            }
+            List<Callable<Void>> tarefas = new ArrayList<>();
+            for (List<Integer> indices : porDisciplina.values()) {
+                tarefas.add(() -> {
+                    indices.sort(Comparator.comparingInt(i -> posicao.get(alunos[i])));
+                    for (int i : indices) {
+                        resultados[i] = atender(pedidos.get(i), alunos[i], disciplinas[i]);
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> tarefa : executor.invokeAll(tarefas)) {
+                try {
+                    tarefa.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Erro na matrícula em lote", e.getCause());
+                }
+            }
+        }
+        return Arrays.asList(resultados);
+    }
+
+    private Resultado atender(Pedido pedido, Aluno aluno, Disciplina disciplina) {
+        // recusa logo o que nao depende da turma; Turma.matricular checa tudo de
+        // novo na mesma etapa que ocupa a vaga (inclusive se o aluno ja esta
+        // na disciplina naquele semestre)
+        if (aluno.isEmAfastamento()) {
+            return new Resultado(pedido, null, "Semestre trancado");
+        }
+        if (!aluno.podeMatricular(aluno.getTotalTurmas())) {
+            return new Resultado(pedido, null, "Aluno especial atingiu o limite de disciplinas");
+        }
+        if (!disciplina.preRequisitosAtendidos(aluno)) {
+            return new Resultado(pedido, null, "Pré-requisitos não cumpridos");
+        }
+
+        List<Turma> candidatas = new ArrayList<>();
+        if (pedido.turmas().isEmpty()) {
+            candidatas.addAll(disciplina.getTurmas());
+        } else {
+            for (String codigo : pedido.turmas()) {
+                Turma turma = registro.buscarTurma(disciplina.getCodigo(), codigo);
+                if (turma != null) {
+                    candidatas.add(turma);
+                }
+            }
+        }
+
+        String motivo = "Turma não encontrada";
+        for (Turma turma : candidatas) {
+            // o aluno pode ter sido removido por outra sessao desde a leitura dos pedidos
+            motivo = registro.comTravaDeLeitura(() -> registro.buscarAluno(pedido.matricula()) != aluno
+                    ? "Aluno não encontrado"
+                    : turma.matricular(aluno, movimentos));
+            if (motivo.equals(MATRICULADO)) {
+                return new Resultado(pedido, turma, MATRICULADO);
+            }
+        }
+        return new Resultado(pedido, null, motivo);
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+
+/**
+ * Notas de uma turma num unico {@code double[]}, uma linha por slot de aluno
+ * (ver {@link ConjuntoIndexado}) e uma coluna por tipo de avaliacao. Nota
+ * ausente e {@link Double#NaN}.
+ *
+ * Os tipos padrao (P1, P2, P3, L, S) tem sempre as colunas 0 a 4; outros tipos
+ * digitados no menu ganham uma coluna nova so nesta turma.
+ */
+public class MatrizNotas {
+    public static final int P1 = 0;
+    public static final int P2 = 1;
+    public static final int P3 = 2;
+    public static final int L = 3;
+    public static final int S = 4;
+    private static final String[] TIPOS_PADRAO = { "P1", "P2", "P3", "L", "S" };
+    private static final double[] LINHA_VAZIA = { Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN };
+
+    private String[] tipos = TIPOS_PADRAO;
+    private int colunas = TIPOS_PADRAO.length;
+    private int linhas;
+    private double[] notas = new double[0];
+
+    /**
+     * @param tipo
+     * @return coluna do tipo, ou -1 se nenhuma nota desse tipo foi lancada
+     */
+    public int ordinal(String tipo) {
+        int padrao = ordinalPadrao(tipo);
+        if (padrao >= 0) {
+            return padrao;
+        }
+        for (int i = TIPOS_PADRAO.length; i < colunas; i++) {
+            if (tipos[i].equals(tipo)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int ordinalPadrao(String tipo) {
+        return switch (tipo) {
+            case "P1" -> P1;
+            case "P2" -> P2;
+            case "P3" -> P3;
+            case "L" -> L;
+            case "S" -> S;
+            default -> -1;
+        };
+    }
+
+    public int getTotalTipos() {
+        return colunas;
+    }
+
+    public String getTipo(int ordinal) {
+        return tipos[ordinal];
+    }
+
+    /**
+     * @param slot
+     * @param ordinal
+     * @return a nota, ou NaN se nao foi lancada
+     */
+    public double get(int slot, int ordinal) {
+        return slot < linhas ? notas[slot * colunas + ordinal] : Double.NaN;
+    }
+
+    /**
+     * @param slot
+     * @param metodo
+     * @return media do slot pelo metodo, lida direto do array de notas
+     */
+    public double media(int slot, MetodoAvaliacao metodo) {
+        return slot < linhas ? metodo.media(notas, slot * colunas) : metodo.media(LINHA_VAZIA, 0);
+    }
+
+    public void definir(int slot, String tipo, double nota) {
+        int ordinal = ordinal(tipo);
+        if (ordinal < 0) {
+            ordinal = adicionarTipo(tipo);
+        }
+        definir(slot, ordinal, nota);
+    }
+
+    public void definir(int slot, int ordinal, double nota) {
+        garantirLinhas(slot + 1);
+        notas[slot * colunas + ordinal] = nota;
+    }
+
+    /**
+     * @param slot
+     * @return true se o slot tem pelo menos uma nota
+     */
+    public boolean possuiNotas(int slot) {
+        if (slot >= linhas) {
+            return false;
+        }
+        for (int i = slot * colunas, fim = i + colunas; i < fim; i++) {
+            if (!Double.isNaN(notas[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Apaga as notas do slot (aluno saiu da turma; o slot pode ser reusado).
+     */
+    public void limpar(int slot) {
+        if (slot < linhas) {
+            Arrays.fill(notas, slot * colunas, (slot + 1) * colunas, Double.NaN);
+        }
+    }
+
+    private void garantirLinhas(int minimo) {
+        if (minimo <= linhas) {
+            return;
+        }
+        int novasLinhas = Math.max(minimo, Math.max(8, linhas + (linhas >> 1)));
+        notas = Arrays.copyOf(notas, novasLinhas * colunas);
+        Arrays.fill(notas, linhas * colunas, notas.length, Double.NaN);
+        linhas = novasLinhas;
+    }
+
+    private int adicionarTipo(String tipo) {
+        int novasColunas = colunas + 1;
+        double[] novas = new double[linhas * novasColunas];
+        for (int slot = 0; slot < linhas; slot++) {
+            System.arraycopy(notas, slot * colunas, novas, slot * novasColunas, colunas);
+            novas[slot * novasColunas + colunas] = Double.NaN;
+        }
+        tipos = Arrays.copyOf(tipos, novasColunas);
+        tipos[colunas] = tipo;
+        notas = novas;
+        colunas = novasColunas;
+        return colunas - 1;
+    }
+}
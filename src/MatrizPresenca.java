@@ -0,0 +1,171 @@
+import java.util.Arrays;
+
+/**
+ * Faltas de uma turma aula por aula: um bitset de {@code totalAulas} bits por
+ * slot de aluno (ver {@link ConjuntoIndexado}), todos num unico {@code long[]}.
+ * Bit ligado = falta naquela aula. O total de faltas sai de
+ * {@link Long#bitCount}.
+ */
+public class MatrizPresenca {
+    private final int totalAulas;
+    private final int palavras; // longs por aluno
+    private int linhas;
+    private long[] bits = new long[0];
+
+    public MatrizPresenca(int totalAulas) {
+        this.totalAulas = Math.max(0, totalAulas);
+        this.palavras = palavras(this.totalAulas);
+    }
+
+    /**
+     * @return quantos longs ocupa uma linha de totalAulas bits
+     */
+    public static int palavras(int totalAulas) {
+        return (Math.max(0, totalAulas) + 63) >>> 6;
+    }
+
+    public int getTotalAulas() {
+        return totalAulas;
+    }
+
+    public int getPalavras() {
+        return palavras;
+    }
+
+    public boolean isFalta(int slot, int aula) {
+        return slot < linhas && (bits[slot * palavras + (aula >>> 6)] & (1L << aula)) != 0;
+    }
+
+    /**
+     * @param slot
+     * @param aula  de 0 ate totalAulas - 1
+     * @param falta true para falta, false para presenca
+     */
+    public void marcar(int slot, int aula, boolean falta) {
+        verificarAula(aula);
+        garantirLinhas(slot + 1);
+        int i = slot * palavras + (aula >>> 6);
+        if (falta) {
+            bits[i] |= 1L << aula;
+        } else {
+            bits[i] &= ~(1L << aula);
+        }
+    }
+
+    public int getFaltas(int slot) {
+        if (slot >= linhas) {
+            return 0;
+        }
+        int faltas = 0;
+        for (int i = slot * palavras, fim = i + palavras; i < fim; i++) {
+            faltas += Long.bitCount(bits[i]);
+        }
+        return faltas;
+    }
+
+    /**
+     * @return primeira aula sem falta do slot, ou -1 se faltou em todas
+     */
+    public int proximaAulaSemFalta(int slot) {
+        for (int p = 0; p < palavras; p++) {
+            long palavra = slot < linhas ? bits[slot * palavras + p] : 0L;
+            if (palavra != -1L) {
+                int aula = (p << 6) + Long.numberOfTrailingZeros(~palavra);
+                return aula < totalAulas ? aula : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marca falta nas primeiras {@code faltas} aulas e presenca nas outras; usado
+     * quando so se sabe o total (dados antigos).
+     */
+    public void definirTotal(int slot, int faltas) {
+        faltas = Math.min(faltas, totalAulas);
+        limpar(slot);
+        if (faltas == 0) {
+            return;
+        }
+        garantirLinhas(slot + 1);
+        int inicio = slot * palavras;
+        Arrays.fill(bits, inicio, inicio + (faltas >>> 6), -1L);
+        if ((faltas & 63) != 0) {
+            bits[inicio + (faltas >>> 6)] = (1L << faltas) - 1;
+        }
+    }
+
+    /**
+     * @return copia das palavras do slot
+     */
+    public long[] getLinha(int slot) {
+        long[] linha = new long[palavras];
+        if (slot < linhas) {
+            System.arraycopy(bits, slot * palavras, linha, 0, palavras);
+        }
+        return linha;
+    }
+
+    public void definirLinha(int slot, long[] linha) {
+        garantirLinhas(slot + 1);
+        int n = Math.min(palavras, linha.length);
+        System.arraycopy(linha, 0, bits, slot * palavras, n);
+        Arrays.fill(bits, slot * palavras + n, (slot + 1) * palavras, 0L);
+        if (palavras > 0 && (totalAulas & 63) != 0) {
+            bits[(slot + 1) * palavras - 1] &= (1L << totalAulas) - 1; // descarta bits alem da ultima aula
+        }
+    }
+
+    public void limpar(int slot) {
+        if (slot < linhas) {
+            Arrays.fill(bits, slot * palavras, (slot + 1) * palavras, 0L);
+        }
+    }
+
+    private void garantirLinhas(int minimo) {
+        if (minimo <= linhas) {
+            return;
+        }
+        int novasLinhas = Math.max(minimo, Math.max(8, linhas + (linhas >> 1)));
+        bits = Arrays.copyOf(bits, novasLinhas * palavras);
+        linhas = novasLinhas;
+    }
+
+    private void verificarAula(int aula) {
+        if (aula < 0 || aula >= totalAulas) {
+            throw new IllegalArgumentException("Aula inválida: " + (aula + 1));
+        }
+    }
+
+    // formato texto: um digito hexadecimal para cada 4 aulas, a primeira aula
+    // no bit menos significativo do primeiro digito; zeros no fim sao omitidos
+
+    public static String paraHex(long[] linha) {
+        StringBuilder hex = new StringBuilder();
+        int ultimo = 0;
+        for (int p = 0; p < linha.length; p++) {
+            for (int n = 0; n < 16; n++) {
+                int digito = (int) (linha[p] >>> (n << 2)) & 0xF;
+                hex.append(Character.forDigit(digito, 16));
+                if (digito != 0) {
+                    ultimo = hex.length();
+                }
+            }
+        }
+        hex.setLength(ultimo);
+        return hex.toString();
+    }
+
+    public static long[] deHex(CharSequence hex, int totalAulas) {
+        int palavras = palavras(totalAulas);
+        long[] linha = new long[palavras];
+        for (int i = 0; i < hex.length() && (i >>> 4) < palavras; i++) {
+            int digito = Character.digit(hex.charAt(i), 16);
+            if (digito < 0) {
+                throw new IllegalArgumentException("Mapa de faltas inválido: " + hex);
+            }
+            linha[i >>> 4] |= (long) digito << ((i & 15) << 2);
+        }
+        return linha;
+    }
+}
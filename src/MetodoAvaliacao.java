@@ -0,0 +1,38 @@
+/**
+ * Forma de calcular a media de um aluno. Recebe a linha do aluno na
+ * {@link MatrizNotas} direto no array de notas (nota ausente = NaN), sem
+ * copia nem busca por nome de avaliacao.
+ *
+ * Ver {@link MetodosAvaliacao} para os metodos disponiveis.
+ */
+public interface MetodoAvaliacao {
+
+    /**
+     * @param notas  array da matriz de notas
+     * @param inicio posicao da nota P1 do aluno; P2, P3, L e S vem em seguida
+     *               (ver as constantes de {@link MatrizNotas})
+     * @return media do aluno
+     */
+    double media(double[] notas, int inicio);
+
+    /**
+     * Media ponderada das avaliacoes padrao; nota ausente conta como zero.
+     *
+     * @param pesos   peso de P1, P2, P3, L e S, nessa ordem
+     * @param divisor
+     */
+    record Ponderada(double[] pesos, double divisor) implements MetodoAvaliacao {
+
+        @Override
+        public double media(double[] notas, int inicio) {
+            double soma = 0.0;
+            for (int i = 0; i < pesos.length; i++) {
+                double nota = notas[inicio + i];
+                if (!Double.isNaN(nota)) {
+                    soma += nota * pesos[i];
+                }
+            }
+            return soma / divisor;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro dos metodos de avaliacao por nome. A {@link Turma} resolve o seu
+ * metodo uma vez, no construtor; o calculo das medias nao compara mais nomes.
+ *
+ * Um nome que nao esta registrado e tratado como formula
+ * ({@link FormulaAvaliacao}); cada texto de formula e compilado uma unica vez
+ * e fica guardado, entao turmas com a mesma formula dividem a mesma arvore.
+ */
+public final class MetodosAvaliacao {
+    public static final String METODO_1 = "Método 1";
+    public static final String METODO_2 = "Método 2";
+
+    /** (P1 + P2 + P3 + L + S) / 5 */
+    public static final MetodoAvaliacao SIMPLES = new MetodoAvaliacao.Ponderada(new double[] { 1, 1, 1, 1, 1 }, 5);
+    /** (P1 + 2*P2 + 3*P3 + L + S) / 8 */
+    public static final MetodoAvaliacao PONDERADA = new MetodoAvaliacao.Ponderada(new double[] { 1, 2, 3, 1, 1 }, 8);
+
+    private static final Map<String, MetodoAvaliacao> METODOS = new ConcurrentHashMap<>();
+    private static final Map<String, MetodoAvaliacao> FORMULAS = new ConcurrentHashMap<>();
+
+    static {
+        METODOS.put(METODO_1, SIMPLES);
+        METODOS.put(METODO_2, PONDERADA);
+    }
+
+    private MetodosAvaliacao() {
+    }
+
+    /**
+     * @param nome
+     * @param metodo
+     */
+    public static void registrar(String nome, MetodoAvaliacao metodo) {
+        METODOS.put(nome, metodo);
+    }
+
+    /**
+     * @param nome nome registrado ou texto de uma formula
+     * @return o metodo registrado com esse nome ou a formula compilada; nomes
+     *         que nao sao formulas validas usam a media ponderada, como sempre
+     *         foi
+     */
+    public static MetodoAvaliacao resolver(String nome) {
+        if (nome == null) {
+            return PONDERADA;
+        }
+        MetodoAvaliacao metodo = METODOS.get(nome);
+        if (metodo != null) {
+            return metodo;
+        }
+        return FORMULAS.computeIfAbsent(nome, texto -> {
+            try {
+                return FormulaAvaliacao.compilar(texto);
+            } catch (IllegalArgumentException e) {
+                return PONDERADA;
+            }
+        });
+    }
+
+    /**
+     * Compila a formula (ou pega a ja compilada), para validar o que o usuario
+     * digitou antes de criar a turma.
+     *
+     * @param formula
+     * @return a formula compilada
+     * @throws IllegalArgumentException se a formula e invalida
+     */
+    public static MetodoAvaliacao compilar(String formula) {
+        MetodoAvaliacao metodo = FORMULAS.get(formula);
+        if (metodo == null || metodo == PONDERADA) {
+            metodo = FormulaAvaliacao.compilar(formula);
+            FORMULAS.put(formula, metodo);
+        }
+        return metodo;
+    }
+}
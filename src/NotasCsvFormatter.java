@@ -0,0 +1,41 @@
+import java.io.IOException;
+
+/**
+ * Notas e faltas de cada aluno em cada turma, uma linha por matricula que tem
+ * algum lancamento. As notas vao num campo so: {@code "P1=7.0;P2=8.5"}. As
+ * faltas aula por aula vao em hexadecimal (ver {@link MatrizPresenca#paraHex});
+ * a coluna faltas repete o total para leitura humana.
+ */
+public class NotasCsvFormatter implements CsvService.CsvFormatter<AlunoNaTurma> {
+    @Override
+    public String getHeader() {
+        return "disciplinaCodigo,turmaCodigo,alunoMatricula,faltas,notas,faltasPorAula";
+    }
+
+    @Override
+    public void format(AlunoNaTurma linha, CsvEscritor out) throws IOException {
+        Turma turma = linha.turma();
+        Aluno aluno = linha.aluno();
+        out.campo(turma.getDisciplina().getCodigo())
+                .campo(turma.getCodigo())
+                .campo(aluno.getMatricula())
+                .campo(turma.getFaltas(aluno));
+
+        out.campo().append('"');
+        boolean primeira = true;
+        for (int ordinal = 0; ordinal < turma.getTotalTiposAvaliacao(); ordinal++) {
+            double nota = turma.getNota(aluno, ordinal);
+            if (Double.isNaN(nota)) {
+                continue;
+            }
+            if (!primeira) {
+                out.append(';');
+            }
+            primeira = false;
+            out.appendEscapado(turma.getTipoAvaliacao(ordinal)).append('=').append(Double.toString(nota));
+        }
+        out.append('"');
+
+        out.campo(MatrizPresenca.paraHex(turma.getMapaFaltas(aluno)));
+    }
+}
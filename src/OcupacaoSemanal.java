@@ -0,0 +1,86 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Uniao dos horarios das turmas de um aluno, professor ou sala, separada por
+ * semestre: as turmas de semestres passados continuam na lista do dono (o
+ * historico do aluno, por exemplo) mas nao ocupam o horario dos seguintes.
+ * Incluir uma turma e um OR; ao tirar uma, a uniao e refeita a partir das
+ * turmas que sobraram (poucas por dono). Checar choque com uma nova turma e um
+ * AND. Cada dono tem poucos semestres, entao eles ficam num array percorrido
+ * em ordem em vez de um mapa.
+ */
+public class OcupacaoSemanal {
+    private String[] semestres = new String[0];
+    private long[][] bitsPorSemestre = new long[0][];
+
+    public void adicionar(Turma turma) {
+        String semestre = semestre(turma);
+        int i = indice(semestre);
+        if (i < 0) {
+            i = semestres.length;
+            semestres = Arrays.copyOf(semestres, i + 1);
+            bitsPorSemestre = Arrays.copyOf(bitsPorSemestre, i + 1);
+            semestres[i] = semestre;
+            bitsPorSemestre[i] = new long[HorarioSemanal.PALAVRAS];
+        }
+        turma.getHorarioSemanal().somarEm(bitsPorSemestre[i]);
+    }
+
+    /**
+     * @param turmas turmas que continuam ocupando o horario
+     */
+    public void refazer(Iterable<Turma> turmas) {
+        for (long[] bits : bitsPorSemestre) {
+            Arrays.fill(bits, 0L); // reaproveita os arrays: refazer e chamado a cada saida
+        }
+        for (Turma turma : turmas) {
+            adicionar(turma);
+        }
+    }
+
+    public boolean conflitaCom(Turma turma) {
+        int i = indice(semestre(turma));
+        return i >= 0 && turma.getHorarioSemanal().intersecta(bitsPorSemestre[i]);
+    }
+
+    private int indice(String semestre) {
+        for (int i = 0; i < semestres.length; i++) {
+            if (semestres[i].equals(semestre)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Procura, entre as turmas do dono, a que se choca com a nova. So percorre
+     * a lista se o AND com a ocupacao acusar choque.
+     *
+     * @param turmas turmas do dono
+     * @param nova
+     * @return a turma em conflito, ou null
+     */
+    public Turma buscarConflito(Iterable<Turma> turmas, Turma nova) {
+        if (!conflitaCom(nova)) {
+            return null;
+        }
+        for (Turma turma : turmas) {
+            if (turma != nova && seChocam(turma, nova)) {
+                return turma;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true se as turmas sao do mesmo semestre e os horarios se cruzam
+     */
+    public static boolean seChocam(Turma a, Turma b) {
+        return a.getHorarioSemanal().conflitaCom(b.getHorarioSemanal()) && semestre(a).equals(semestre(b));
+    }
+
+    private static String semestre(Turma turma) {
+        return Objects.toString(turma.getSemestre(), "");
+    }
+}
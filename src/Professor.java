@@ -6,7 +6,11 @@ public class Professor {
     private final String matricula; // professores sao identificados por uma matricula
     private String nome;
     private String departamento;
+    // sincronizado: sessoes diferentes podem criar turmas do mesmo professor
     private final List<Turma> turmasMinistradas = new ArrayList<>();
+    private final OcupacaoSemanal ocupacao = new OcupacaoSemanal(); // horarios das turmas
+    private boolean alterado; // mudou desde o ultimo salvamento
+    private int id = -1;
 
     /**
      * 
@@ -27,9 +31,10 @@ public class Professor {
      * 
      * @param turma
      */
-    public void adicionarTurma(Turma turma) {
+    public synchronized void adicionarTurma(Turma turma) {
         if (turma != null && !turmasMinistradas.contains(turma)) {
             turmasMinistradas.add(turma);
+            ocupacao.adicionar(turma);
         }
     }
 
@@ -37,8 +42,18 @@ public class Professor {
      * 
      * @param turma
      */
-    public void removerTurma(Turma turma) {
-        turmasMinistradas.remove(turma);
+    public synchronized void removerTurma(Turma turma) {
+        if (turmasMinistradas.remove(turma)) {
+            ocupacao.refazer(turmasMinistradas);
+        }
+    }
+
+    /**
+     * @param turma
+     * @return turma do professor com horario em choque com a informada, ou null
+     */
+    public synchronized Turma buscarConflitoDeHorario(Turma turma) {
+        return ocupacao.buscarConflito(turmasMinistradas, turma);
     }
 
     // getters e setters
@@ -54,6 +69,7 @@ public class Professor {
     public void setNome(String nome) {
         if (nome != null && !nome.isBlank()) {
             this.nome = nome;
+            this.alterado = true;
         }
     }
 
@@ -63,19 +79,40 @@ public class Professor {
 
     public void setDepartamento(String departamento) {
         this.departamento = departamento;
+        this.alterado = true;
+    }
+
+    /**
+     * @return id atribuido pelo {@link RegistroAcademico}, ou -1 se ainda nao
+     *         foi registrado
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    public boolean isAlterado() {
+        return alterado;
+    }
+
+    public void marcarSalvo() {
+        alterado = false;
     }
 
     /**
      * @return
      */
-    public List<Turma> getTurmasMinistradas() {
+    public synchronized List<Turma> getTurmasMinistradas() {
         return new ArrayList<>(turmasMinistradas);
     }
 
     /**
      * @return
      */
-    public int getCargaHoraria() {
+    public synchronized int getCargaHoraria() {
         return turmasMinistradas.size();
     }
 
@@ -1,3 +1,5 @@
+import java.io.IOException;
+
 public class ProfessorCsvFormatter implements CsvService.CsvFormatter<Professor> {
     @Override
     public String getHeader() {
@@ -5,10 +7,9 @@ public class ProfessorCsvFormatter implements CsvService.CsvFormatter<Professor>
     }
 
     @Override
-    public String format(Professor professor) {
-        return String.format("%s,\"%s\",\"%s\"",
-                professor.getMatricula(),
-                professor.getNome().replace("\"", "\"\""),
-                professor.getDepartamento().replace("\"", "\"\""));
+    public void format(Professor professor, CsvEscritor out) throws IOException {
+        out.campo(professor.getMatricula())
+                .campoComAspas(professor.getNome())
+                .campoComAspas(professor.getDepartamento());
     }
 }
\ No newline at end of file
@@ -0,0 +1,794 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Guarda alunos, disciplinas, professores e turmas com um indice por chave
+ * primaria (matricula / codigo), para que as buscas nao precisem percorrer as
+ * listas inteiras. As listas mantem a ordem de cadastro usada nos menus e nos CSVs.
+ *
+ * Cada entidade recebe um id inteiro denso ao entrar no registro (ver
+ * {@link DicionarioIds}); o indice por chave e o dicionario + uma lista por id.
+ * Os codigos de disciplina citados como pre-requisito usam o mesmo dicionario
+ * das disciplinas, entao o id do pre-requisito e o id da disciplina, mesmo que
+ * ela ainda nao tenha sido cadastrada.
+ *
+ * Tambem sabe quais colecoes mudaram desde o ultimo salvamento (inclusoes e
+ * remocoes aqui, alteracoes pelo {@code isAlterado()} de cada entidade), para
+ * que so os arquivos afetados sejam regravados.
+ *
+ * Pode ser usado por varias sessoes ao mesmo tempo (modo servidor): inclusoes
+ * e remocoes pegam a trava de escrita, buscas a de leitura, e as listas saem
+ * como copia. A ordem das travas e registro -> turma -> aluno. As inclusoes
+ * aceitam uma acao que roda ainda com a trava de escrita (o journal), para
+ * que a ordem gravada seja a ordem em que as entidades entraram.
+ */
+public class RegistroAcademico {
+    private final List<Aluno> alunos = new ArrayList<>();
+    private final List<Disciplina> disciplinas = new ArrayList<>();
+    private final List<Professor> professores = new ArrayList<>();
+    private final List<Turma> turmas = new ArrayList<>();
+
+    private final DicionarioIds matriculasAlunos = new DicionarioIds();
+    private final DicionarioIds codigosDisciplinas = new DicionarioIds();
+    private final DicionarioIds matriculasProfessores = new DicionarioIds();
+    private final DicionarioIds chavesTurmas = new DicionarioIds();
+
+    // posicao = id; null para ids sem entidade (removida ou so citada)
+    private final List<Aluno> alunosPorId = new ArrayList<>();
+    private final List<Disciplina> disciplinasPorId = new ArrayList<>();
+    private final List<Professor> professoresPorId = new ArrayList<>();
+    private final List<Turma> turmasPorId = new ArrayList<>();
+
+    // turmas presenciais por sala (chave em maiusculas) e a uniao dos horarios, por semestre
+    private final Map<String, List<Turma>> turmasPorSala = new HashMap<>();
+    private final Map<String, OcupacaoSemanal> ocupacaoSalas = new HashMap<>();
+
+    // montado sob demanda; null depois de incluir ou remover disciplina
+    private volatile GrafoPreRequisitos grafoPreRequisitos;
+
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+    private final Lock leitura = trava.readLock();
+    private final Lock escrita = trava.writeLock();
+
+    // inclusoes/remocoes desde o ultimo salvamento
+    private boolean alunosAlterados;
+    private boolean disciplinasAlteradas;
+    private boolean professoresAlterados;
+    private boolean turmasAlteradas;
+
+    /**
+     * Roda a acao com a trava de leitura: nenhuma entidade entra ou sai do
+     * registro enquanto isso, entao o que a acao buscar pela chave continua
+     * registrado ate ela terminar. A acao nao pode incluir nem remover nada.
+     *
+     * @param acao
+     * @return o que a acao devolveu
+     */
+    public <T> T comTravaDeLeitura(Supplier<T> acao) {
+        leitura.lock();
+        try {
+            return acao.get();
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    // alunos
+
+    /**
+     * @param aluno
+     * @return false se ja existe um aluno com a mesma matricula
+     */
+    public boolean adicionarAluno(Aluno aluno) {
+        return adicionarAluno(aluno, a -> {
+        });
+    }
+
+    /**
+     * @param aluno
+     * @param aoAdicionar chamado com a trava de escrita se o aluno entrou
+     * @return false se ja existe um aluno com a mesma matricula
+     */
+    public boolean adicionarAluno(Aluno aluno, Consumer<Aluno> aoAdicionar) {
+        escrita.lock();
+        try {
+            int id = matriculasAlunos.id(aluno.getMatricula());
+            if (!ocupar(alunosPorId, id, aluno)) {
+                return false;
+            }
+            aluno.setId(id);
+            alunos.add(aluno);
+            alunosAlterados = true;
+            aoAdicionar.accept(aluno);
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Remove o aluno do registro, das listas de espera e de todas as turmas em
+     * que estava matriculado.
+     *
+     * @param aluno
+     * @return
+     */
+    public boolean removerAluno(Aluno aluno) {
+        escrita.lock();
+        try {
+            if (!liberar(alunosPorId, aluno.getId(), aluno)) {
+                return false;
+            }
+            alunos.remove(aluno);
+            alunosAlterados = true;
+            removerDasListasDeEspera(aluno, Turma.Movimentos.NENHUM);
+            removerMatriculas(aluno, Turma.Movimentos.NENHUM);
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Tira o aluno de todas as turmas (trancamento de semestre), usando o
+     * indice reverso do aluno em vez de percorrer todas as turmas.
+     *
+     * @param aluno
+     * @param movimentos avisado de cada saida e promocao
+     * @return turmas de onde o aluno saiu
+     */
+    public List<Turma> removerMatriculas(Aluno aluno, Turma.Movimentos movimentos) {
+        List<Turma> saiu = new ArrayList<>();
+        for (Turma turma : aluno.getTurmas()) {
+            if (turma.removerAluno(aluno, movimentos)) {
+                saiu.add(turma);
+            }
+        }
+        return saiu;
+    }
+
+    /**
+     * @param aluno
+     * @param movimentos avisado de cada saida
+     * @return turmas de cuja lista de espera o aluno saiu
+     */
+    public List<Turma> removerDasListasDeEspera(Aluno aluno, Turma.Movimentos movimentos) {
+        leitura.lock();
+        try {
+            List<Turma> saiu = new ArrayList<>();
+            for (Turma turma : turmas) {
+                if (turma.sairDaEspera(aluno, movimentos)) {
+                    saiu.add(turma);
+                }
+            }
+            return saiu;
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public Aluno buscarAluno(String matricula) {
+        leitura.lock();
+        try {
+            return matricula == null ? null : buscarPorId(alunosPorId, matriculasAlunos.buscar(matricula));
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public Aluno buscarAlunoPorId(int id) {
+        leitura.lock();
+        try {
+            return buscarPorId(alunosPorId, id);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public boolean existeAluno(String matricula) {
+        return buscarAluno(matricula) != null;
+    }
+
+    /**
+     * @return copia da lista de alunos, na ordem de cadastro
+     */
+    public List<Aluno> getAlunos() {
+        leitura.lock();
+        try {
+            return List.copyOf(alunos);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    // disciplinas
+
+    /**
+     * @param disciplina
+     * @return false se ja existe uma disciplina com o mesmo codigo
+     */
+    public boolean adicionarDisciplina(Disciplina disciplina) {
+        return adicionarDisciplina(disciplina, d -> {
+        });
+    }
+
+    /**
+     * @param disciplina
+     * @param aoAdicionar chamado com a trava de escrita se a disciplina entrou
+     * @return false se ja existe uma disciplina com o mesmo codigo
+     */
+    public boolean adicionarDisciplina(Disciplina disciplina, Consumer<Disciplina> aoAdicionar) {
+        escrita.lock();
+        try {
+            int id = codigosDisciplinas.id(disciplina.getCodigo());
+            if (!ocupar(disciplinasPorId, id, disciplina)) {
+                return false;
+            }
+            disciplina.setId(id);
+            List<String> prerequisitos = disciplina.getPrerequisitos();
+            int[] idsPrerequisitos = new int[prerequisitos.size()];
+            for (int i = 0; i < idsPrerequisitos.length; i++) {
+                idsPrerequisitos[i] = codigosDisciplinas.id(prerequisitos.get(i));
+            }
+            disciplina.setIdsPrerequisitos(idsPrerequisitos);
+            disciplinas.add(disciplina);
+            disciplinasAlteradas = true;
+            grafoPreRequisitos = null;
+            aoAdicionar.accept(disciplina);
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Remove a disciplina e todas as suas turmas do registro.
+     *
+     * @param disciplina
+     * @return
+     */
+    public boolean removerDisciplina(Disciplina disciplina) {
+        return removerDisciplina(disciplina, Turma.Movimentos.NENHUM);
+    }
+
+    /**
+     * @param disciplina
+     * @param movimentos avisado dos alunos que saem das listas de espera das
+     *                   turmas removidas
+     * @return
+     */
+    public boolean removerDisciplina(Disciplina disciplina, Turma.Movimentos movimentos) {
+        escrita.lock();
+        try {
+            if (!liberar(disciplinasPorId, disciplina.getId(), disciplina)) {
+                return false;
+            }
+            disciplinas.remove(disciplina);
+            disciplinasAlteradas = true;
+            grafoPreRequisitos = null;
+            for (Turma turma : new ArrayList<>(disciplina.getTurmas())) {
+                removerTurma(turma, movimentos);
+            }
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    public Disciplina buscarDisciplina(String codigo) {
+        leitura.lock();
+        try {
+            return codigo == null ? null : buscarPorId(disciplinasPorId, codigosDisciplinas.buscar(codigo));
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public Disciplina buscarDisciplinaPorId(int id) {
+        leitura.lock();
+        try {
+            return buscarPorId(disciplinasPorId, id);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @return copia da lista de disciplinas, na ordem de cadastro
+     */
+    public List<Disciplina> getDisciplinas() {
+        leitura.lock();
+        try {
+            return List.copyOf(disciplinas);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @return grafo de pre-requisitos das disciplinas cadastradas
+     */
+    public GrafoPreRequisitos getGrafoPreRequisitos() {
+        GrafoPreRequisitos grafo = grafoPreRequisitos;
+        if (grafo == null) {
+            escrita.lock();
+            try {
+                if (grafoPreRequisitos == null) {
+                    grafoPreRequisitos = new GrafoPreRequisitos(disciplinas, codigosDisciplinas.tamanho());
+                }
+                grafo = grafoPreRequisitos;
+            } finally {
+                escrita.unlock();
+            }
+        }
+        return grafo;
+    }
+
+    /**
+     * @param codigo        codigo da nova disciplina
+     * @param prerequisitos codigos dos seus pre-requisitos
+     * @return true se a disciplina passaria a ser pre-requisito dela mesma
+     */
+    public boolean formariaCiclo(String codigo, List<String> prerequisitos) {
+        GrafoPreRequisitos grafo = getGrafoPreRequisitos();
+        int id = codigosDisciplinas.buscar(codigo);
+        for (String prerequisito : prerequisitos) {
+            if (prerequisito.equals(codigo)) {
+                return true;
+            }
+            int idPrerequisito = codigosDisciplinas.buscar(prerequisito);
+            if (id >= 0 && grafo.dependeDe(idPrerequisito, id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // professores
+
+    /**
+     * @param professor
+     * @return false se ja existe um professor com a mesma matricula
+     */
+    public boolean adicionarProfessor(Professor professor) {
+        return adicionarProfessor(professor, p -> {
+        });
+    }
+
+    /**
+     * @param professor
+     * @param aoAdicionar chamado com a trava de escrita se o professor entrou
+     * @return false se ja existe um professor com a mesma matricula
+     */
+    public boolean adicionarProfessor(Professor professor, Consumer<Professor> aoAdicionar) {
+        escrita.lock();
+        try {
+            int id = matriculasProfessores.id(professor.getMatricula());
+            if (!ocupar(professoresPorId, id, professor)) {
+                return false;
+            }
+            professor.setId(id);
+            professores.add(professor);
+            professoresAlterados = true;
+            aoAdicionar.accept(professor);
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    public boolean removerProfessor(Professor professor) {
+        escrita.lock();
+        try {
+            if (!professor.getTurmasMinistradas().isEmpty()
+                    || !liberar(professoresPorId, professor.getId(), professor)) {
+                return false;
+            }
+            professores.remove(professor);
+            professoresAlterados = true;
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    public Professor buscarProfessor(String matricula) {
+        leitura.lock();
+        try {
+            return matricula == null ? null : buscarPorId(professoresPorId, matriculasProfessores.buscar(matricula));
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public Professor buscarProfessorPorId(int id) {
+        leitura.lock();
+        try {
+            return buscarPorId(professoresPorId, id);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @return copia da lista de professores, na ordem de cadastro
+     */
+    public List<Professor> getProfessores() {
+        leitura.lock();
+        try {
+            return List.copyOf(professores);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    // turmas
+
+    /**
+     * Liga a turma a sua disciplina e ao seu professor e indexa pelo par
+     * (codigo da disciplina, codigo da turma).
+     *
+     * @param turma
+     * @return false se a disciplina recusar a turma (conflito de horario) ou se
+     *         o codigo ja estiver em uso na disciplina
+     */
+    public boolean adicionarTurma(Turma turma) {
+        escrita.lock();
+        try {
+            return incluirTurma(turma);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Inclui uma turma nova (criada pelo menu). Alem do que
+     * {@link #adicionarTurma(Turma)} recusa, recusa choque de horario com outra
+     * turma do professor ou da mesma sala. A checagem e a inclusao sao feitas
+     * com a trava de escrita, entao duas sessoes nao criam turmas em choque.
+     * Os dados carregados nao passam por aqui: turmas ja em choque continuam
+     * existindo.
+     *
+     * @param turma
+     * @param aoAdicionar chamado com a trava de escrita se a turma entrou
+     * @return null se a turma entrou, ou o motivo da recusa
+     */
+    public String adicionarTurmaNova(Turma turma, Consumer<Turma> aoAdicionar) {
+        escrita.lock();
+        try {
+            Turma conflito = turma.getProfessor().buscarConflitoDeHorario(turma);
+            if (conflito != null) {
+                return String.format("O professor já dá aula neste horário (%s %s - %s)",
+                        conflito.getDisciplina().getCodigo(), conflito.getCodigo(), conflito.getHorario());
+            }
+            conflito = conflitoDeSala(turma);
+            if (conflito != null) {
+                return String.format("A sala %s já está ocupada neste horário (%s %s - %s)",
+                        turma.getSala(), conflito.getDisciplina().getCodigo(), conflito.getCodigo(),
+                        conflito.getHorario());
+            }
+            if (!incluirTurma(turma)) {
+                return "Conflito de horário ou turma já existe";
+            }
+            aoAdicionar.accept(turma);
+            return null;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    // chamado com a trava de escrita
+    private boolean incluirTurma(Turma turma) {
+        String chave = chaveTurma(turma.getDisciplina().getCodigo(), turma.getCodigo());
+        // o id so e criado depois que a turma e aceita: um id dado a uma turma
+        // recusada ficaria como buraco nos arrays indexados por id
+        if (buscarPorId(turmasPorId, chavesTurmas.buscar(chave)) != null
+                || !turma.getDisciplina().adicionarTurma(turma)) {
+            return false;
+        }
+        int id = chavesTurmas.id(chave);
+        turma.getProfessor().adicionarTurma(turma);
+        ocupar(turmasPorId, id, turma);
+        turma.setId(id);
+        turmas.add(turma);
+        String sala = chaveSala(turma);
+        if (sala != null) {
+            turmasPorSala.computeIfAbsent(sala, s -> new ArrayList<>()).add(turma);
+            ocupacaoSalas.computeIfAbsent(sala, s -> new OcupacaoSemanal()).adicionar(turma);
+        }
+        turmasAlteradas = true;
+        return true;
+    }
+
+    public boolean removerTurma(Turma turma) {
+        return removerTurma(turma, Turma.Movimentos.NENHUM);
+    }
+
+    /**
+     * Remove a turma, tirando seus alunos e esvaziando a lista de espera (sem
+     * promover ninguem).
+     *
+     * @param turma
+     * @param movimentos avisado dos alunos que saem da lista de espera
+     * @return
+     */
+    public boolean removerTurma(Turma turma, Turma.Movimentos movimentos) {
+        escrita.lock();
+        try {
+            if (!liberar(turmasPorId, turma.getId(), turma)) {
+                return false;
+            }
+            turmas.remove(turma);
+            turmasAlteradas = true;
+            turma.removerTodosAlunos(movimentos);
+            turma.getDisciplina().removerTurma(turma);
+            turma.getProfessor().removerTurma(turma);
+            String sala = chaveSala(turma);
+            if (sala != null && turmasPorSala.get(sala).remove(turma)) {
+                ocupacaoSalas.get(sala).refazer(turmasPorSala.get(sala));
+            }
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Troca a sala de uma turma presencial ja registrada.
+     *
+     * @param turma
+     * @param sala
+     */
+    public void definirSala(Turma turma, String sala) {
+        definirSala(turma, sala, t -> {
+        });
+    }
+
+    /**
+     * @param turma
+     * @param sala
+     * @param aoDefinir chamado com a trava de escrita depois da troca
+     */
+    public void definirSala(Turma turma, String sala, Consumer<Turma> aoDefinir) {
+        escrita.lock();
+        try {
+            String antiga = chaveSala(turma);
+            if (antiga != null && turmasPorSala.get(antiga).remove(turma)) {
+                ocupacaoSalas.get(antiga).refazer(turmasPorSala.get(antiga));
+            }
+            turma.setSala(sala);
+            String nova = chaveSala(turma);
+            if (nova != null) {
+                turmasPorSala.computeIfAbsent(nova, s -> new ArrayList<>()).add(turma);
+                ocupacaoSalas.computeIfAbsent(nova, s -> new OcupacaoSemanal()).adicionar(turma);
+            }
+            aoDefinir.accept(turma);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * @param turma turma presencial ainda nao registrada
+     * @return turma ja registrada na mesma sala com horario em choque, ou null
+     */
+    public Turma buscarConflitoDeSala(Turma turma) {
+        leitura.lock();
+        try {
+            return conflitoDeSala(turma);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    // chamado com uma das travas
+    private Turma conflitoDeSala(Turma turma) {
+        String sala = chaveSala(turma);
+        if (sala == null || !ocupacaoSalas.containsKey(sala)) {
+            return null;
+        }
+        return ocupacaoSalas.get(sala).buscarConflito(turmasPorSala.get(sala), turma);
+    }
+
+    // null para turma remota ou sem sala
+    private static String chaveSala(Turma turma) {
+        String sala = turma.getSala();
+        return sala == null || sala.isBlank() ? null : sala.trim().toUpperCase();
+    }
+
+    public Turma buscarTurma(String codigoDisciplina, String codigoTurma) {
+        leitura.lock();
+        try {
+            if (codigoDisciplina == null || codigoTurma == null) {
+                return null;
+            }
+            return buscarPorId(turmasPorId, chavesTurmas.buscar(chaveTurma(codigoDisciplina, codigoTurma)));
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public Turma buscarTurmaPorId(int id) {
+        leitura.lock();
+        try {
+            return buscarPorId(turmasPorId, id);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @return copia da lista de turmas, na ordem de cadastro
+     */
+    public List<Turma> getTurmas() {
+        leitura.lock();
+        try {
+            return List.copyOf(turmas);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    // controle de alteracoes
+
+    public boolean isAlunosAlterados() {
+        leitura.lock();
+        try {
+            return alunosAlterados || alunos.stream().anyMatch(Aluno::isAlterado);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public boolean isDisciplinasAlteradas() {
+        leitura.lock();
+        try {
+            return disciplinasAlteradas;
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public boolean isProfessoresAlterados() {
+        leitura.lock();
+        try {
+            return professoresAlterados || professores.stream().anyMatch(Professor::isAlterado);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public boolean isTurmasAlteradas() {
+        leitura.lock();
+        try {
+            return turmasAlteradas || turmas.stream().anyMatch(Turma::isAlterado);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @return true se alguma nota ou falta mudou (ou uma turma saiu, levando as
+     *         notas junto)
+     */
+    public boolean isNotasAlteradas() {
+        leitura.lock();
+        try {
+            return turmasAlteradas || turmas.stream().anyMatch(Turma::isNotasAlteradas);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public boolean isListasEsperaAlteradas() {
+        leitura.lock();
+        try {
+            return turmasAlteradas || turmas.stream().anyMatch(t -> t.getListaEspera().isAlterada());
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public boolean isAlterado() {
+        return isAlunosAlterados() || isDisciplinasAlteradas() || isProfessoresAlterados() || isTurmasAlteradas()
+                || isNotasAlteradas() || isListasEsperaAlteradas();
+    }
+
+    /**
+     * Marca tudo como salvo (depois de gravar ou de carregar os dados).
+     */
+    public void marcarSalvo() {
+        escrita.lock();
+        try {
+            alunos.forEach(Aluno::marcarSalvo);
+            professores.forEach(Professor::marcarSalvo);
+            turmas.forEach(Turma::marcarSalvo);
+            alunosAlterados = false;
+            disciplinasAlteradas = false;
+            professoresAlterados = false;
+            turmasAlteradas = false;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    public void limpar() {
+        escrita.lock();
+        try {
+            alunos.clear();
+            disciplinas.clear();
+            professores.clear();
+            turmas.clear();
+            alunosPorId.clear();
+            disciplinasPorId.clear();
+            professoresPorId.clear();
+            turmasPorId.clear();
+            matriculasAlunos.limpar();
+            codigosDisciplinas.limpar();
+            matriculasProfessores.limpar();
+            chavesTurmas.limpar();
+            turmasPorSala.clear();
+            ocupacaoSalas.clear();
+            grafoPreRequisitos = null;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    // dicionarios de ids (o snapshot grava e restaura na mesma ordem)
+
+    public DicionarioIds getMatriculasAlunos() {
+        return matriculasAlunos;
+    }
+
+    public DicionarioIds getCodigosDisciplinas() {
+        return codigosDisciplinas;
+    }
+
+    public DicionarioIds getMatriculasProfessores() {
+        return matriculasProfessores;
+    }
+
+    public DicionarioIds getChavesTurmas() {
+        return chavesTurmas;
+    }
+
+    /**
+     * @param porId
+     * @param id
+     * @param item
+     * @return false se o id ja esta ocupado por outra entidade
+     */
+    private static <T> boolean ocupar(List<T> porId, int id, T item) {
+        while (porId.size() <= id) {
+            porId.add(null);
+        }
+        if (porId.get(id) != null) {
+            return false;
+        }
+        porId.set(id, item);
+        return true;
+    }
+
+    private static <T> boolean liberar(List<T> porId, int id, T item) {
+        if (id < 0 || id >= porId.size() || porId.get(id) != item) {
+            return false;
+        }
+        porId.set(id, null);
+        return true;
+    }
+
+    private static <T> T buscarPorId(List<T> porId, int id) {
+        return id < 0 || id >= porId.size() ? null : porId.get(id);
+    }
+
+    private static String chaveTurma(String codigoDisciplina, String codigoTurma) {
+        return codigoDisciplina + '\u0000' + codigoTurma;
+    }
+}
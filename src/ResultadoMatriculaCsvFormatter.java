@@ -0,0 +1,16 @@
+import java.io.IOException;
+
+public class ResultadoMatriculaCsvFormatter implements CsvService.CsvFormatter<MatriculaEmLote.Resultado> {
+    @Override
+    public String getHeader() {
+        return "matricula,disciplina,turma,situacao";
+    }
+
+    @Override
+    public void format(MatriculaEmLote.Resultado resultado, CsvEscritor out) throws IOException {
+        out.campoEscapado(resultado.pedido().matricula())
+                .campoEscapado(resultado.pedido().disciplina())
+                .campoEscapado(resultado.isMatriculado() ? resultado.turma().getCodigo() : "")
+                .campoEscapado(resultado.situacao());
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Sala do inventario ({@code data/salas.csv}) usada pelo {@link AlocadorSalas}.
+ *
+ * @param codigo
+ * @param capacidade lugares
+ */
+public record Sala(String codigo, int capacidade) {
+
+    public Sala {
+        if (codigo == null || codigo.isBlank()) {
+            throw new IllegalArgumentException("Código da sala inválido");
+        }
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("Capacidade da sala inválida");
+        }
+        codigo = codigo.trim();
+    }
+}
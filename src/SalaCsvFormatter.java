@@ -0,0 +1,14 @@
+import java.io.IOException;
+
+public class SalaCsvFormatter implements CsvService.CsvFormatter<Sala> {
+    @Override
+    public String getHeader() {
+        return "codigo,capacidade";
+    }
+
+    @Override
+    public void format(Sala sala, CsvEscritor out) throws IOException {
+        out.campoEscapado(sala.codigo())
+                .campo(sala.capacidade());
+    }
+}
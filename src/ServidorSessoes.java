@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modo servidor: varios operadores usam o menu ao mesmo tempo, cada um numa
+ * conexao TCP em localhost, todos sobre os mesmos dados. Cada conexao e uma
+ * sessao de {@link SistemaAlunos} com entrada e saida proprias, rodando numa
+ * virtual thread, entao uma sessao parada esperando o operador nao prende
+ * thread do sistema.
+ *
+ * Para testar: {@code nc localhost 5050}, ou com um roteiro,
+ * {@code printf '6\n...\n7\n' | nc localhost 5050}. O texto vai em UTF-8.
+ */
+public class ServidorSessoes implements AutoCloseable {
+    public static final int PORTA_PADRAO = 5050;
+
+    private final SistemaAlunos base;
+    private final ServerSocket servidor;
+    private final ExecutorService sessoes = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger abertas = new AtomicInteger();
+
+    /**
+     * @param base  sistema com os dados ja carregados
+     * @param porta 0 para uma porta livre qualquer
+     * @throws IOException se a porta estiver em uso
+     */
+    public ServidorSessoes(SistemaAlunos base, int porta) throws IOException {
+        this.base = base;
+        this.servidor = new ServerSocket(porta, 50, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPorta() {
+        return servidor.getLocalPort();
+    }
+
+    public int getSessoesAbertas() {
+        return abertas.get();
+    }
+
+    /**
+     * Aceita conexoes ate o servidor ser fechado.
+     */
+    public void atender() {
+        while (!servidor.isClosed()) {
+            try {
+                Socket conexao = servidor.accept();
+                sessoes.submit(() -> sessao(conexao));
+            } catch (SocketException e) {
+                return; // fechado por close()
+            } catch (IOException e) {
+                System.err.println("Erro ao aceitar conexão: " + e.getMessage());
+            }
+        }
+    }
+
+    private void sessao(Socket conexao) {
+        abertas.incrementAndGet();
+        try (conexao;
+                Scanner entrada = new Scanner(conexao.getInputStream(), StandardCharsets.UTF_8);
+                PrintStream saida = new PrintStream(conexao.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            new SistemaAlunos(base, entrada, saida).exibirMenu();
+        } catch (NoSuchElementException | IOException e) {
+            // operador fechou a conexao no meio de um menu
+        } finally {
+            abertas.decrementAndGet();
+        }
+    }
+
+    /**
+     * Para de aceitar conexoes e encerra as sessoes abertas.
+     */
+    @Override
+    public void close() throws IOException {
+        servidor.close();
+        sessoes.shutdownNow(); // interromper a virtual thread fecha o socket dela
+        try {
+            sessoes.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Atende ate alguem digitar "sair" no console do servidor; entao fecha as
+     * sessoes e salva. Sem console (entrada fechada), atende ate o processo ser
+     * encerrado; o journal guarda tudo o que foi feito.
+     *
+     * @param sistema sistema com os dados ja carregados
+     * @param porta
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void executar(SistemaAlunos sistema, int porta) throws IOException, InterruptedException {
+        try (ServidorSessoes servidor = new ServidorSessoes(sistema, porta)) {
+            Thread aceitador = Thread.ofVirtual().start(servidor::atender);
+            System.out.printf("Servidor em localhost:%d. Digite 'sair' para salvar e encerrar.%n", servidor.getPorta());
+            Scanner console = new Scanner(System.in);
+            while (true) {
+                if (!console.hasNextLine()) {
+                    aceitador.join();
+                    return;
+                }
+                String comando = console.nextLine().trim();
+                if (comando.equalsIgnoreCase("sair")) {
+                    break;
+                }
+                System.out.printf("%d sessões abertas.%n", servidor.getSessoesAbertas());
+            }
+        }
+        sistema.saveAllToCsv();
+    }
+}
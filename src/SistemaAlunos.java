@@ -1,216 +1,145 @@
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SistemaAlunos {
-    private final List<Aluno> alunos = new ArrayList<>();
-    private final List<Disciplina> disciplinas = new ArrayList<>();
-    private final List<Professor> professores = new ArrayList<>();
-    private final Scanner scanner = new Scanner(System.in);
+    private static final String ARQUIVO_SALAS = "salas.csv";
+    private static final String ARQUIVO_PEDIDOS = "pedidos_matricula.csv";
+    private static final String ARQUIVO_RESULTADO_LOTE = "resultado_matricula.csv";
+    private static final String ARQUIVO_ESPERA = "espera.csv";
+
+    private final RegistroAcademico registro;
+    private final JournalMutacoes journal;
+    // compartilhada entre as sessoes: cada comando roda com a leitura; salvar
+    // pega a escrita, entao ve os dados parados e pode esvaziar o journal
+    private final ReentrantReadWriteLock operacoes;
+    private final Scanner scanner;
+    private final PrintStream out;
+    private boolean esperaPorIra; // prioridade de quem entra na lista de espera: IRA ou so a chegada
+
+    public SistemaAlunos() {
+        this.registro = new RegistroAcademico();
+        this.journal = new JournalMutacoes();
+        this.operacoes = new ReentrantReadWriteLock(true);
+        this.scanner = new Scanner(System.in);
+        this.out = System.out;
+    }
 
-    public void loadAllFromCsv() {
-        alunos.clear();
-        disciplinas.clear();
-        professores.clear();
+    /**
+     * Nova sessao sobre os mesmos dados de outra (modo servidor).
+     *
+     * @param base    sessao que carregou os dados
+     * @param entrada
+     * @param saida
+     */
+    public SistemaAlunos(SistemaAlunos base, Scanner entrada, PrintStream saida) {
+        this.registro = base.registro;
+        this.journal = base.journal;
+        this.operacoes = base.operacoes;
+        this.scanner = entrada;
+        this.out = saida;
+    }
 
+    /**
+     * Le a proxima linha do operador. Enquanto espera, solta a trava das
+     * operacoes para que outra sessao possa salvar.
+     */
+    private String lerLinha() {
+        out.flush(); // o prompt nao termina em nova linha
+        operacoes.readLock().unlock();
         try {
-
-            new File("data").mkdirs();
-
-            loadProfessoresFromCsv();
-
-            loadDisciplinasFromCsv();
-
-            loadAlunosFromCsv();
-
-            loadTurmasFromCsv();
-
-            System.out.println("Dados carregados automaticamente do CSV!");
-        } catch (IOException e) {
-            System.out.println("Nenhum dado anterior encontrado. Iniciando novo sistema.");
+            return scanner.nextLine();
+        } finally {
+            operacoes.readLock().lock();
         }
     }
 
-    private void loadProfessoresFromCsv() throws IOException {
-        File file = new File("data/professores.csv");
-        if (!file.exists())
-            return;
+    public void loadAllFromCsv() {
+        registro.limpar();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            reader.readLine();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = parseCsvLine(line);
-                if (parts.length >= 3) {
-                    professores.add(new Professor(parts[0], parts[1], parts[2]));
-                }
-            }
-        }
-    }
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
 
-    private void loadDisciplinasFromCsv() throws IOException {
-        File file = new File("data/disciplinas.csv");
-        if (!file.exists())
-            return;
+            new File("data").mkdirs();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            reader.readLine();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = parseCsvLine(line);
-                if (parts.length >= 4) {
-                    List<String> prereqs = parts[3].isEmpty() ? new ArrayList<>() : Arrays.asList(parts[3].split(";"));
-                    disciplinas.add(new Disciplina(parts[0], parts[1], Integer.parseInt(parts[2]), prereqs));
-                }
+            if (!SnapshotBinario.isAtualizado() || !carregarSnapshot()) {
+                new CarregadorCsv(executor, threads).carregar(registro);
+                out.println("Dados carregados automaticamente do CSV!");
             }
+        } catch (IOException e) {
+            out.println("Nenhum dado anterior encontrado. Iniciando novo sistema.");
+        } finally {
+            executor.shutdown();
         }
-    }
 
-    private void loadAlunosFromCsv() throws IOException {
-        File file = new File("data/alunos.csv");
-        if (!file.exists())
-            return;
+        carregarListasEspera();
+        registro.marcarSalvo();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            reader.readLine();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = parseCsvLine(line);
-                if (parts.length >= 5) {
-                    Aluno aluno;
-                    if (parts[3].equalsIgnoreCase("true")) {
-                        aluno = new AlunoEspecial(parts[0], parts[1], parts[2]);
-                    } else {
-                        aluno = new Aluno(parts[0], parts[1], parts[2], false);
-                    }
-                    aluno.setEmAfastamento(Boolean.parseBoolean(parts[4]));
-                    alunos.add(aluno);
-                }
+        try {
+            int aplicadas = journal.reaplicar(registro);
+            if (aplicadas > 0) {
+                out.printf("%d alterações recuperadas do journal.%n", aplicadas);
             }
+        } catch (IOException e) {
+            out.println("Erro ao ler journal: " + e.getMessage());
         }
     }
 
-    private void loadTurmasFromCsv() throws IOException {
-        File file = new File("data/turmas.csv");
-        if (!file.exists())
-            return;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            reader.readLine();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = parseCsvLine(line);
-                if (parts.length >= 10) {
-                    Disciplina disciplina = buscarDisciplinaPorCodigo(parts[1]);
-                    Professor professor = buscarProfessor(parts[2]);
-
-                    if (disciplina != null && professor != null) {
-                        Turma turma = new Turma(
-                                disciplina,
-                                parts[0],
-                                professor,
-                                parts[3],
-                                parts[4],
-                                Boolean.parseBoolean(parts[5]),
-                                parts[6].isEmpty() ? null : parts[6],
-                                parts[7],
-                                Integer.parseInt(parts[8]),
-                                Integer.parseInt(parts[9]));
-
-                        if (parts.length >= 11 && !parts[10].isEmpty()) {
-                            Arrays.stream(parts[10].split(";"))
-                                    .map(this::buscarAlunoPorMatricula)
-                                    .filter(Objects::nonNull)
-                                    .forEach(turma::matricularAluno);
-                        }
-
-                        if (parts.length >= 12 && !parts[11].isEmpty()) {
-                            Arrays.stream(parts[11].split(";"))
-                                    .filter(s -> !s.isEmpty())
-                                    .forEach(gradeData -> {
-                                        String[] alunoGradeParts = gradeData.split(":");
-                                        if (alunoGradeParts.length == 2) {
-                                            Aluno aluno = buscarAlunoPorMatricula(alunoGradeParts[0]);
-                                            if (aluno != null) {
-                                                Arrays.stream(alunoGradeParts[1].split(","))
-                                                        .forEach(gradeEntry -> {
-                                                            String[] gradeParts = gradeEntry.split("=");
-                                                            if (gradeParts.length == 2) {
-                                                                try {
-                                                                    double nota = Double.parseDouble(gradeParts[1]);
-                                                                    turma.registrarNota(aluno, gradeParts[0], nota);
-                                                                } catch (NumberFormatException e) {
-                                                                    System.err.println(
-                                                                            "Formato de nota inválido: " + gradeEntry);
-                                                                }
-                                                            }
-                                                        });
-                                            }
-                                        }
-                                    });
-                        }
-
-                        if (parts.length >= 13 && !parts[12].isEmpty()) {
-                            Arrays.stream(parts[12].split(";"))
-                                    .filter(s -> !s.isEmpty())
-                                    .forEach(faltaData -> {
-                                        String[] faltaParts = faltaData.split("=");
-                                        if (faltaParts.length == 2) {
-                                            Aluno aluno = buscarAlunoPorMatricula(faltaParts[0]);
-                                            if (aluno != null) {
-                                                try {
-                                                    int faltas = Integer.parseInt(faltaParts[1]);
-                                                    for (int i = 0; i < faltas; i++) {
-                                                        turma.registrarFalta(aluno);
-                                                    }
-                                                } catch (NumberFormatException e) {
-                                                    System.err.println("Formato de falta inválido: " + faltaData);
-                                                }
-                                            }
-                                        }
-                                    });
-                        }
-
-                        disciplina.adicionarTurma(turma);
-                        professor.adicionarTurma(turma);
-                    }
-                }
-            }
+    /**
+     * Chamado depois de cada alteracao ja registrada no journal.
+     */
+    private void compactarSeNecessario() {
+        if (journal.precisaCompactar()) {
+            saveAllToCsv();
         }
     }
 
-    private String[] parseCsvLine(String line) {
-        List<String> values = new ArrayList<>();
-        String[] parts = line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
-
-        for (String part : parts) {
-            values.add(part.startsWith("\"") && part.endsWith("\"")
-                    ? part.substring(1, part.length() - 1)
-                    : part);
+    private boolean carregarSnapshot() {
+        long inicio = System.nanoTime();
+        try {
+            SnapshotBinario.carregar(registro);
+            out.printf("Dados carregados do snapshot binário em %d ms!%n",
+                    (System.nanoTime() - inicio) / 1_000_000);
+            return true;
+        } catch (IOException e) {
+            out.println("Snapshot inválido (" + e.getMessage() + "), carregando os CSVs.");
+            registro.limpar();
+            return false;
         }
-        return values.toArray(String[]::new);
     }
 
     // MENU PRINCIPAL
     public void exibirMenu() {
+        operacoes.readLock().lock();
+        try {
+            executarMenu();
+        } finally {
+            operacoes.readLock().unlock();
+        }
+    }
+
+    private void executarMenu() {
         while (true) {
-            System.out.println("\n=== SISTEMA ACADÊMICO ===");
-            System.out.println("1. Gerenciar Alunos");
-            System.out.println("2. Gerenciar Disciplinas");
-            System.out.println("3. Gerenciar Professores");
-            System.out.println("4. Gerenciar Matrículas");
-            System.out.println("5. Gerenciar Notas e Frequência");
-            System.out.println("6. Gerar Relatórios");
-            System.out.println("7. Salvar e Sair");
-            System.out.print("Opção: ");
+            out.println("\n=== SISTEMA ACADÊMICO ===");
+            out.println("1. Gerenciar Alunos");
+            out.println("2. Gerenciar Disciplinas");
+            out.println("3. Gerenciar Professores");
+            out.println("4. Gerenciar Matrículas");
+            out.println("5. Gerenciar Notas e Frequência");
+            out.println("6. Gerar Relatórios");
+            out.println("7. Salvar e Sair");
+            out.print("Opção: ");
 
             try {
-                int opcao = Integer.parseInt(scanner.nextLine());
+                int opcao = Integer.parseInt(lerLinha());
                 switch (opcao) {
                     case 1 -> menuAlunos();
                     case 2 -> menuDisciplinas();
@@ -220,25 +149,25 @@ public class SistemaAlunos {
                     case 6 -> gerarRelatorios();
                     case 7 -> {
                         saveAllToCsv();
-                        System.out.println("Saindo do sistema...");
+                        out.println("Saindo do sistema...");
                         return;
                     }
-                    default -> System.out.println("Opção inválida!");
+                    default -> out.println("Opção inválida!");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("Digite um número válido!");
+                out.println("Digite um número válido!");
             }
         }
     }
 
     private void menuAlunos() {
-        System.out.println("\n--- GERENCIAR ALUNOS ---");
-        System.out.println("1. Cadastrar aluno");
-        System.out.println("2. Editar aluno");
-        System.out.println("3. Listar alunos");
-        System.out.println("4. Voltar");
+        out.println("\n--- GERENCIAR ALUNOS ---");
+        out.println("1. Cadastrar aluno");
+        out.println("2. Editar aluno");
+        out.println("3. Listar alunos");
+        out.println("4. Voltar");
 
-        switch (scanner.nextLine()) {
+        switch (lerLinha()) {
             case "1" -> cadastrarAluno();
             case "2" -> editarAluno();
             case "3" -> listarAlunos();
@@ -246,108 +175,153 @@ public class SistemaAlunos {
     }
 
     private void cadastrarAluno() {
-        System.out.println("\n--- CADASTRO DE ALUNO ---");
-        System.out.print("Nome: ");
-        String nome = scanner.nextLine();
+        out.println("\n--- CADASTRO DE ALUNO ---");
+        out.print("Nome: ");
+        String nome = lerLinha();
 
         String matricula;
         do {
-            System.out.print("Matrícula: ");
-            matricula = scanner.nextLine();
+            out.print("Matrícula: ");
+            matricula = lerLinha();
             if (isMatriculaDuplicada(matricula)) {
-                System.out.println("Erro: Matrícula já existe!");
+                out.println("Erro: Matrícula já existe!");
             }
         } while (isMatriculaDuplicada(matricula));
 
-        System.out.print("Curso: ");
-        String curso = scanner.nextLine();
+        out.print("Curso: ");
+        String curso = lerLinha();
 
-        System.out.print("É estudante especial? (S/N): ");
-        boolean especial = scanner.nextLine().equalsIgnoreCase("S");
+        out.print("É estudante especial? (S/N): ");
+        boolean especial = lerLinha().equalsIgnoreCase("S");
 
         Aluno aluno = especial ? new AlunoEspecial(nome, matricula, curso) : new Aluno(nome, matricula, curso, false);
 
-        alunos.add(aluno);
-        System.out.println("Aluno cadastrado com sucesso!");
+        if (registro.adicionarAluno(aluno, journal::alunoCadastrado)) {
+            compactarSeNecessario();
+            out.println("Aluno cadastrado com sucesso!");
+        } else {
+            out.println("Erro: Matrícula já existe!");
+        }
     }
 
     private void editarAluno() {
-        System.out.print("Matrícula do aluno: ");
-        Aluno aluno = buscarAlunoPorMatricula(scanner.nextLine());
+        out.print("Matrícula do aluno: ");
+        String matricula = lerLinha();
+        Aluno aluno = buscarAlunoPorMatricula(matricula);
 
         if (aluno != null) {
-            System.out.println("Dados atuais: " + aluno);
-
-            System.out.print("Novo nome (enter para manter): ");
-            String nome = scanner.nextLine();
-            if (!nome.isBlank())
-                aluno.setNome(nome);
-
-            System.out.print("Novo curso (enter para manter): ");
-            String curso = scanner.nextLine();
-            if (!curso.isBlank())
-                aluno.setCurso(curso);
+            out.println("Dados atuais: " + aluno);
+
+            out.print("Novo nome (enter para manter): ");
+            String nome = lerLinha();
+
+            out.print("Novo curso (enter para manter): ");
+            String curso = lerLinha();
+
+            // outra sessao pode ter removido o aluno durante as perguntas
+            aluno = registro.comTravaDeLeitura(() -> {
+                Aluno atual = registro.buscarAluno(matricula);
+                if (atual != null) {
+                    synchronized (atual) { // a linha do journal sai na mesma ordem da edicao
+                        if (!nome.isBlank())
+                            atual.setNome(nome);
+                        if (!curso.isBlank())
+                            atual.setCurso(curso);
+                        journal.alunoEditado(atual);
+                    }
+                }
+                return atual;
+            });
+            if (aluno == null) {
+                out.println("Aluno não encontrado!");
+                return;
+            }
+            compactarSeNecessario();
 
-            System.out.println("Dados atualizados: " + aluno);
+            out.println("Dados atualizados: " + aluno);
         } else {
-            System.out.println("Aluno não encontrado!");
+            out.println("Aluno não encontrado!");
         }
     }
 
     private void criarTurma() {
-        System.out.println("\n--- CRIAR TURMA ---");
+        out.println("\n--- CRIAR TURMA ---");
 
-        System.out.println("Disciplinas disponíveis:");
-        disciplinas.forEach(d -> System.out.println(d.getCodigo() + " - " + d.getNome()));
+        out.println("Disciplinas disponíveis:");
+        registro.getDisciplinas().forEach(d -> out.println(d.getCodigo() + " - " + d.getNome()));
 
-        System.out.print("Código da disciplina: ");
-        Disciplina disciplina = buscarDisciplinaPorCodigo(scanner.nextLine());
+        out.print("Código da disciplina: ");
+        Disciplina disciplina = buscarDisciplinaPorCodigo(lerLinha());
 
         if (disciplina == null) {
-            System.out.println("Disciplina não encontrada!");
+            out.println("Disciplina não encontrada!");
             return;
         }
 
-        System.out.println("Professores disponíveis:");
-        professores.forEach(p -> System.out.println(p.getMatricula() + " - " + p.getNome()));
+        out.println("Professores disponíveis:");
+        registro.getProfessores().forEach(p -> out.println(p.getMatricula() + " - " + p.getNome()));
 
-        System.out.print("Matrícula do professor: ");
-        Professor professor = buscarProfessor(scanner.nextLine());
+        out.print("Matrícula do professor: ");
+        Professor professor = buscarProfessor(lerLinha());
 
         if (professor == null) {
-            System.out.println("Professor não encontrado!");
+            out.println("Professor não encontrado!");
             return;
         }
 
-        System.out.print("Código da turma (ex: T01): ");
-        String codigoTurma = scanner.nextLine();
-
-        System.out.print("Semestre (ex: 2024.1): ");
-        String semestre = scanner.nextLine();
-
-        System.out.println("\nMétodo de avaliação:");
-        System.out.println("1. Média simples (P1 + P2 + P3 + L + S) / 5");
-        System.out.println("2. Média ponderada (P1*1 + P2*2 + P3*3 + L + S) / 8");
-        System.out.print("Escolha o método (1 ou 2): ");
-        String metodo = scanner.nextLine().equals("1") ? "Método 1" : "Método 2";
+        out.print("Código da turma (ex: T01): ");
+        String codigoTurma = lerLinha();
+
+        out.print("Semestre (ex: 2024.1): ");
+        String semestre = lerLinha();
+
+        out.println("\nMétodo de avaliação:");
+        out.println("1. Média simples (P1 + P2 + P3 + L + S) / 5");
+        out.println("2. Média ponderada (P1*1 + P2*2 + P3*3 + L + S) / 8");
+        out.println("3. Fórmula personalizada");
+        out.print("Escolha o método (1, 2 ou 3): ");
+        String metodo;
+        switch (lerLinha()) {
+            case "1" -> metodo = MetodosAvaliacao.METODO_1;
+            case "3" -> {
+                out.println("Use P1, P2, P3, L, S, números, + - * /, min(...), max(...),");
+                out.println("se(condição, valor, senão) e presente(nota).");
+                out.println("Ex: (P1+2*P2+3*P3)/6*0.8 + L*0.2");
+                out.print("Fórmula: ");
+                metodo = lerLinha().trim();
+                try {
+                    MetodosAvaliacao.compilar(metodo);
+                } catch (IllegalArgumentException e) {
+                    out.println("Erro: " + e.getMessage());
+                    return;
+                }
+            }
+            default -> metodo = MetodosAvaliacao.METODO_2;
+        }
 
-        System.out.print("Presencial? (S/N): ");
-        boolean presencial = scanner.nextLine().equalsIgnoreCase("S");
+        out.print("Presencial? (S/N): ");
+        boolean presencial = lerLinha().equalsIgnoreCase("S");
 
         String sala = null;
         if (presencial) {
-            System.out.print("Sala: ");
-            sala = scanner.nextLine();
+            out.print("Sala (ENTER para alocar automaticamente): ");
+            sala = lerLinha().trim();
         }
 
-        System.out.print("Horário (ex: Seg 14h-16h): ");
-        String horario = scanner.nextLine();
+        out.print("Horário (ex: Seg 14h-16h): ");
+        String horario = lerLinha();
+        try {
+            HorarioSemanal.ler(horario);
+        } catch (IllegalArgumentException e) {
+            out.println("Erro: " + e.getMessage());
+            return;
+        }
 
-        System.out.print("Capacidade máxima: ");
-        int capacidade = Integer.parseInt(scanner.nextLine());
+        out.print("Capacidade máxima: ");
+        int capacidade = Integer.parseInt(lerLinha());
 
-        System.out.print("Total de aulas no semestre: ");
-        int totalAulas = Integer.parseInt(scanner.nextLine());
+        out.print("Total de aulas no semestre: ");
+        int totalAulas = Integer.parseInt(lerLinha());
 
         Turma novaTurma = new Turma(
                 disciplina,
@@ -361,152 +335,505 @@ public class SistemaAlunos {
                 capacidade,
                 totalAulas);
 
-        if (disciplina.adicionarTurma(novaTurma)) {
-            professor.adicionarTurma(novaTurma);
-            System.out.println("Turma criada com sucesso!");
+        AlocadorSalas alocador = null;
+        if (presencial && sala.isEmpty()) {
+            alocador = alocadorComSalasAtuais(carregarSalas());
+            Sala escolhida = alocador.alocar(novaTurma);
+            if (escolhida == null) {
+                out.println("Erro: Nenhuma sala do inventário comporta a turma neste horário!");
+                return;
+            }
+            novaTurma.setSala(escolhida.codigo());
+        }
+
+        // choque com o professor ou a sala e checado pelo registro, junto com a inclusao
+        String recusa = registro.adicionarTurmaNova(novaTurma, journal::turmaCriada);
+        if (recusa == null) {
+            if (alocador != null) {
+                int movidas = aplicarAlocacao(alocador);
+                out.printf("Sala alocada: %s%s\n", novaTurma.getSala(),
+                        movidas > 0 ? " (outra turma mudou de sala para liberar o horário)" : "");
+            }
+            compactarSeNecessario();
+            out.println("Turma criada com sucesso!");
         } else {
-            System.out.println("Erro: Conflito de horário ou turma já existe!");
+            out.println("Erro: " + recusa + "!");
         }
     }
 
     private void menuDisciplinas() {
-        System.out.println("\n--- GERENCIAR DISCIPLINAS ---");
-        System.out.println("1. Cadastrar disciplina");
-        System.out.println("2. Criar turma");
-        System.out.println("3. Listar disciplinas");
-        System.out.println("4. Voltar");
-
-        switch (scanner.nextLine()) {
+        out.println("\n--- GERENCIAR DISCIPLINAS ---");
+        out.println("1. Cadastrar disciplina");
+        out.println("2. Criar turma");
+        out.println("3. Listar disciplinas");
+        out.println("4. Gerenciar salas");
+        out.println("5. Voltar");
+
+        switch (lerLinha()) {
             case "1" -> cadastrarDisciplina();
             case "2" -> criarTurma();
             case "3" -> listarDisciplinas();
+            case "4" -> menuSalas();
+        }
+    }
+
+    private void menuSalas() {
+        out.println("\n--- GERENCIAR SALAS ---");
+        out.println("1. Cadastrar sala");
+        out.println("2. Listar salas");
+        out.println("3. Alocar salas para todas as turmas presenciais");
+        out.println("4. Voltar");
+
+        switch (lerLinha()) {
+            case "1" -> cadastrarSala();
+            case "2" -> listarSalas();
+            case "3" -> alocarSalas();
+        }
+    }
+
+    private void cadastrarSala() {
+        out.println("\n--- CADASTRO DE SALA ---");
+        out.print("Código: ");
+        String codigo = lerLinha().trim();
+
+        out.print("Capacidade (lugares): ");
+        int capacidade = Integer.parseInt(lerLinha());
+
+        List<Sala> salas = carregarSalas();
+        if (salas.stream().anyMatch(s -> s.codigo().equalsIgnoreCase(codigo))) {
+            out.println("Erro: Já existe uma sala com este código!");
+            return;
+        }
+        try {
+            salas.add(new Sala(codigo, capacidade));
+            CsvService.saveToCsv(ARQUIVO_SALAS, salas, new SalaCsvFormatter());
+            out.println("Sala cadastrada!");
+        } catch (IllegalArgumentException | IOException e) {
+            out.println("Erro: " + e.getMessage());
+        }
+    }
+
+    private void listarSalas() {
+        List<Sala> salas = carregarSalas();
+        if (salas.isEmpty()) {
+            out.println("Nenhuma sala cadastrada!");
+            return;
+        }
+        AlocadorSalas alocador = alocadorComSalasAtuais(salas);
+        out.println("\n--- SALAS ---");
+        salas.forEach(s -> out.printf("%s - %d lugares - %d turmas\n",
+                s.codigo(), s.capacidade(), alocador.getTurmas(s).size()));
+        List<Turma> problemas = alocador.getProblemas();
+        if (!problemas.isEmpty()) {
+            out.println("Turmas em sala pequena demais ou com choque de horário:");
+            problemas.forEach(t -> out.printf("- %s %s (%s, sala %s, %d vagas)\n", t.getDisciplina().getCodigo(),
+                    t.getCodigo(), t.getHorario(), t.getSala(), t.getCapacidadeMaxima()));
+        }
+    }
+
+    private void alocarSalas() {
+        List<Sala> salas = carregarSalas();
+        if (salas.isEmpty()) {
+            out.println("Nenhuma sala cadastrada!");
+            return;
+        }
+        out.print("Isto refaz a alocação de todas as turmas presenciais. Continuar? (S/N): ");
+        if (!lerLinha().equalsIgnoreCase("S")) {
+            return;
+        }
+
+        long inicio = System.currentTimeMillis();
+        List<Turma> presenciais = registro.getTurmas().stream()
+                .filter(Turma::isPresencial)
+                .collect(Collectors.toList());
+        AlocadorSalas alocador = new AlocadorSalas(salas);
+        List<Turma> semSala = alocador.alocarTodas(presenciais);
+        int alteradas = aplicarAlocacao(alocador);
+        for (Turma turma : semSala) {
+            // sem horario a turma nem entra na alocacao: a sala digitada fica
+            if (!turma.getHorarioSemanal().isVazio() && turma.getSala() != null && !turma.getSala().isEmpty()) {
+                registro.definirSala(turma, "", journal::salaDefinida);
+                alteradas++;
+            }
+        }
+        compactarSeNecessario();
+
+        out.printf("%d turmas alocadas, %d mudaram de sala (%d ms).\n",
+                presenciais.size() - semSala.size(), alteradas, System.currentTimeMillis() - inicio);
+        if (!semSala.isEmpty()) {
+            out.println("Turmas sem sala (horário fora do formato ou falta de sala livre):");
+            semSala.forEach(t -> out.printf("- %s %s (%s, %d vagas)\n",
+                    t.getDisciplina().getCodigo(), t.getCodigo(), t.getHorario(), t.getCapacidadeMaxima()));
+        }
+    }
+
+    private List<Sala> carregarSalas() {
+        if (!CsvService.exists(ARQUIVO_SALAS)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Sala> salas = CsvService.lerCsv(ARQUIVO_SALAS, c -> {
+            try {
+                return new Sala(c.get(0), c.getInt(1));
+            } catch (IllegalArgumentException e) {
+                return null; // linha invalida
+            }
+        })) {
+            return salas.collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            out.println("Erro ao ler salas: " + e.getMessage());
+            return new ArrayList<>();
         }
     }
 
+    /**
+     * @return alocador com as salas ja usadas pelas turmas presenciais
+     */
+    private AlocadorSalas alocadorComSalasAtuais(List<Sala> salas) {
+        AlocadorSalas alocador = new AlocadorSalas(salas);
+        registro.getTurmas().stream()
+                .filter(Turma::isPresencial)
+                .forEach(alocador::fixar);
+        return alocador;
+    }
+
+    /**
+     * Grava nas turmas registradas as salas escolhidas pelo alocador.
+     *
+     * @return quantas turmas mudaram de sala
+     */
+    private int aplicarAlocacao(AlocadorSalas alocador) {
+        int alteradas = 0;
+        for (Map.Entry<Turma, Sala> alocacao : alocador.getAlocacoes().entrySet()) {
+            Turma turma = alocacao.getKey();
+            String sala = alocacao.getValue().codigo();
+            if (turma.getId() >= 0 && !sala.equalsIgnoreCase(turma.getSala())) {
+                registro.definirSala(turma, sala, journal::salaDefinida);
+                alteradas++;
+            }
+        }
+        return alteradas;
+    }
+
     private void cadastrarDisciplina() {
-        System.out.println("\n--- CADASTRO DE DISCIPLINA ---");
-        System.out.print("Código: ");
-        String codigo = scanner.nextLine();
+        out.println("\n--- CADASTRO DE DISCIPLINA ---");
+        out.print("Código: ");
+        String codigo = lerLinha();
 
-        System.out.print("Nome: ");
-        String nome = scanner.nextLine();
+        out.print("Nome: ");
+        String nome = lerLinha();
 
-        System.out.print("Carga horária: ");
-        int cargaHoraria = Integer.parseInt(scanner.nextLine());
+        out.print("Carga horária: ");
+        int cargaHoraria = Integer.parseInt(lerLinha());
 
-        System.out.print("Pré-requisitos (separados por vírgula): ");
-        List<String> prereqs = Arrays.stream(scanner.nextLine().split(","))
+        out.print("Pré-requisitos (separados por vírgula): ");
+        List<String> prereqs = Arrays.stream(lerLinha().split(","))
                 .map(String::trim)
+                .filter(p -> !p.isEmpty())
                 .collect(Collectors.toList());
 
-        disciplinas.add(new Disciplina(codigo, nome, cargaHoraria, prereqs));
-        System.out.println("Disciplina cadastrada!");
+        if (registro.buscarDisciplina(codigo) == null && registro.formariaCiclo(codigo, prereqs)) {
+            out.println("Erro: Os pré-requisitos formariam um ciclo com esta disciplina!");
+            return;
+        }
+
+        Disciplina disciplina = new Disciplina(codigo, nome, cargaHoraria, prereqs);
+        if (registro.adicionarDisciplina(disciplina, journal::disciplinaCadastrada)) {
+            compactarSeNecessario();
+            out.println("Disciplina cadastrada!");
+        } else {
+            out.println("Erro: Já existe uma disciplina com este código!");
+        }
     }
 
     private void menuProfessores() {
-        System.out.println("\n--- GERENCIAR PROFESSORES ---");
-        System.out.println("1. Cadastrar professor");
-        System.out.println("2. Listar professores");
-        System.out.println("3. Voltar");
+        out.println("\n--- GERENCIAR PROFESSORES ---");
+        out.println("1. Cadastrar professor");
+        out.println("2. Listar professores");
+        out.println("3. Voltar");
 
-        switch (scanner.nextLine()) {
+        switch (lerLinha()) {
             case "1" -> cadastrarProfessor();
             case "2" -> listarProfessores();
         }
     }
 
     private void cadastrarProfessor() {
-        System.out.println("\n--- CADASTRO DE PROFESSOR ---");
-        System.out.print("Nome: ");
-        String nome = scanner.nextLine();
+        out.println("\n--- CADASTRO DE PROFESSOR ---");
+        out.print("Nome: ");
+        String nome = lerLinha();
 
-        System.out.print("Matrícula: ");
-        String matricula = scanner.nextLine();
+        out.print("Matrícula: ");
+        String matricula = lerLinha();
 
-        System.out.print("Departamento: ");
-        String departamento = scanner.nextLine();
+        out.print("Departamento: ");
+        String departamento = lerLinha();
 
-        professores.add(new Professor(matricula, nome, departamento));
-        System.out.println("Professor cadastrado!");
+        Professor professor = new Professor(matricula, nome, departamento);
+        if (registro.adicionarProfessor(professor, journal::professorCadastrado)) {
+            compactarSeNecessario();
+            out.println("Professor cadastrado!");
+        } else {
+            out.println("Erro: Já existe um professor com esta matrícula!");
+        }
     }
 
     private void menuMatriculas() {
-        System.out.println("\n--- GERENCIAR MATRÍCULAS ---");
-        System.out.println("1. Matricular aluno");
-        System.out.println("2. Trancar disciplina");
-        System.out.println("3. Trancar semestre");
-        System.out.println("4. Voltar");
-
-        switch (scanner.nextLine()) {
+        out.println("\n--- GERENCIAR MATRÍCULAS ---");
+        out.println("1. Matricular aluno");
+        out.println("2. Trancar disciplina");
+        out.println("3. Trancar semestre");
+        out.println("4. Matrícula em lote");
+        out.println("5. Listas de espera");
+        out.println("6. Voltar");
+
+        switch (lerLinha()) {
             case "1" -> matricularAluno();
             case "2" -> trancarDisciplina();
             case "3" -> trancarSemestre();
+            case "4" -> matricularEmLote();
+            case "5" -> menuListasEspera();
+        }
+    }
+
+    private void menuListasEspera() {
+        out.println("\n--- LISTAS DE ESPERA ---");
+        out.println("1. Ver lista de espera de uma turma");
+        out.println("2. Tirar aluno da lista de espera");
+        out.println("3. Prioridade de novas entradas (atual: " + (esperaPorIra ? "IRA" : "ordem de chegada") + ")");
+        out.println("4. Voltar");
+
+        switch (lerLinha()) {
+            case "1" -> listarEspera();
+            case "2" -> sairDaEspera();
+            case "3" -> {
+                esperaPorIra = !esperaPorIra;
+                out.println("Novas entradas ordenadas por " + (esperaPorIra ? "IRA" : "ordem de chegada")
+                        + ". Quem já está na fila mantém a posição.");
+            }
+        }
+    }
+
+    private Turma lerTurma() {
+        out.print("Código da disciplina: ");
+        String codigoDisciplina = lerLinha().trim();
+        out.print("Código da turma: ");
+        Turma turma = registro.buscarTurma(codigoDisciplina, lerLinha().trim());
+        if (turma == null) {
+            out.println("Turma não encontrada!");
+        }
+        return turma;
+    }
+
+    private void listarEspera() {
+        Turma turma = lerTurma();
+        if (turma == null) {
+            return;
+        }
+        List<ListaEspera.Entrada> fila = turma.getListaEspera().getEntradas();
+        if (fila.isEmpty()) {
+            out.println("Lista de espera vazia!");
+            return;
+        }
+        out.printf("\n--- LISTA DE ESPERA %s %s (%d vagas) ---\n",
+                turma.getDisciplina().getCodigo(), turma.getCodigo(), turma.getVagasDisponiveis());
+        int posicao = 1;
+        for (ListaEspera.Entrada entrada : fila) {
+            out.printf("%d. %s - %s%s\n", posicao++, entrada.aluno().getMatricula(), entrada.aluno().getNome(),
+                    entrada.prioridade() != 0.0 ? String.format(" (prioridade %.2f)", entrada.prioridade()) : "");
+        }
+    }
+
+    private void sairDaEspera() {
+        Turma turma = lerTurma();
+        if (turma == null) {
+            return;
+        }
+        out.print("Matrícula do aluno: ");
+        Aluno aluno = buscarAlunoPorMatricula(lerLinha().trim());
+        if (aluno != null && turma.sairDaEspera(aluno, journal)) {
+            compactarSeNecessario();
+            out.println("Aluno retirado da lista de espera!");
+        } else {
+            out.println("Aluno não está na lista de espera desta turma!");
+        }
+    }
+
+    private void carregarListasEspera() {
+        if (!CsvService.exists(ARQUIVO_ESPERA)) {
+            return;
+        }
+        record Linha(Turma turma, Aluno aluno, double prioridade) {
+        }
+        try (Stream<Linha> linhas = CsvService.lerCsv(ARQUIVO_ESPERA, c -> {
+            Turma turma = registro.buscarTurma(c.get(0), c.get(1));
+            Aluno aluno = registro.buscarAluno(c.get(2));
+            if (turma == null || aluno == null || turma.isMatriculado(aluno)) {
+                return null; // turma ou aluno sumiu
+            }
+            try {
+                return new Linha(turma, aluno, Double.parseDouble(c.get(3)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        })) {
+            // na ordem do arquivo, que e a ordem das filas
+            linhas.forEach(l -> l.turma().getListaEspera().entrar(l.aluno(), l.prioridade()));
+        } catch (IOException | UncheckedIOException e) {
+            out.println("Erro ao ler listas de espera: " + e.getMessage());
+        }
+    }
+
+    private void matricularEmLote() {
+        out.print("Arquivo de pedidos em data/ (matricula,disciplina,turmas) [" + ARQUIVO_PEDIDOS + "]: ");
+        String arquivo = lerLinha().trim();
+        if (arquivo.isEmpty()) {
+            arquivo = ARQUIVO_PEDIDOS;
+        }
+        List<MatriculaEmLote.Pedido> pedidos;
+        try {
+            pedidos = MatriculaEmLote.lerPedidos(arquivo);
+        } catch (IOException e) {
+            out.println("Erro ao ler pedidos: " + e.getMessage());
+            return;
+        }
+        if (pedidos.isEmpty()) {
+            out.println("Nenhum pedido no arquivo!");
+            return;
+        }
+
+        out.println("Prioridade na disputa por vagas:");
+        out.println("1. Ordem do arquivo");
+        out.println("2. IRA");
+        out.println("3. Alunos de um curso, depois IRA");
+        out.print("Opção: ");
+        String opcao = lerLinha().trim();
+        Comparator<Aluno> prioridade = (a, b) -> 0;
+        if (opcao.equals("2") || opcao.equals("3")) {
+            List<Aluno> alunos = pedidos.stream()
+                    .map(p -> registro.buscarAluno(p.matricula()))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            prioridade = MatriculaEmLote.porIra(alunos);
+            if (opcao.equals("3")) {
+                out.print("Curso: ");
+                prioridade = MatriculaEmLote.porCurso(lerLinha().trim()).thenComparing(prioridade);
+            }
+        }
+
+        long inicio = System.currentTimeMillis();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<MatriculaEmLote.Resultado> resultados;
+        try {
+            resultados = new MatriculaEmLote(registro, executor, journal).processar(pedidos, prioridade);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("Matrícula em lote interrompida!");
+            return;
+        } finally {
+            executor.shutdown();
+        }
+
+        long matriculados = resultados.stream().filter(MatriculaEmLote.Resultado::isMatriculado).count();
+        compactarSeNecessario();
+
+        out.printf("%d de %d pedidos atendidos (%d ms).\n",
+                matriculados, pedidos.size(), System.currentTimeMillis() - inicio);
+        try {
+            CsvService.saveToCsv(ARQUIVO_RESULTADO_LOTE, resultados, new ResultadoMatriculaCsvFormatter());
+            out.println("Resultado por pedido em data/" + ARQUIVO_RESULTADO_LOTE);
+        } catch (IOException e) {
+            out.println("Erro ao gravar resultado: " + e.getMessage());
         }
     }
 
     private void trancarDisciplina() {
-        System.out.print("Matrícula do aluno: ");
-        Aluno aluno = buscarAlunoPorMatricula(scanner.nextLine());
+        out.print("Matrícula do aluno: ");
+        Aluno aluno = buscarAlunoPorMatricula(lerLinha());
 
         if (aluno == null) {
-            System.out.println("Aluno não encontrado!");
+            out.println("Aluno não encontrado!");
             return;
         }
 
-        System.out.print("Código da disciplina: ");
-        Disciplina disciplina = buscarDisciplinaPorCodigo(scanner.nextLine());
+        out.print("Código da disciplina: ");
+        Disciplina disciplina = buscarDisciplinaPorCodigo(lerLinha());
 
         if (disciplina == null) {
-            System.out.println("Disciplina não encontrada!");
+            out.println("Disciplina não encontrada!");
             return;
         }
 
-        List<Turma> turmasMatriculadas = disciplina.getTurmas().stream()
-                .filter(t -> t.getAlunosMatriculados().contains(aluno))
+        List<Turma> turmasMatriculadas = aluno.getTurmas().stream()
+                .filter(t -> t.getDisciplina() == disciplina)
                 .collect(Collectors.toList());
 
         if (turmasMatriculadas.isEmpty()) {
-            System.out.println("Aluno não está matriculado nesta disciplina!");
+            out.println("Aluno não está matriculado nesta disciplina!");
             return;
         }
 
-        System.out.print("Confirmar trancamento? (S/N): ");
-        boolean confirmar = scanner.nextLine().equalsIgnoreCase("S");
+        out.print("Confirmar trancamento? (S/N): ");
+        boolean confirmar = lerLinha().equalsIgnoreCase("S");
 
         if (confirmar) {
-            turmasMatriculadas.forEach(t -> t.removerAluno(aluno));
-            System.out.println("Disciplina trancada com sucesso!");
+            // as turmas sao buscadas de novo: a matricula pode ter mudado durante a pergunta
+            List<Turma> saiu = registro.comTravaDeLeitura(() -> aluno.getTurmas().stream()
+                    .filter(t -> t.getDisciplina() == disciplina && t.removerAluno(aluno, journal))
+                    .collect(Collectors.toList()));
+            if (saiu.isEmpty()) {
+                out.println("Aluno não está matriculado nesta disciplina!");
+                return;
+            }
+            compactarSeNecessario();
+            out.println("Disciplina trancada com sucesso!");
         }
     }
 
     private void trancarSemestre() {
-        System.out.print("Matrícula do aluno: ");
-        Aluno aluno = buscarAlunoPorMatricula(scanner.nextLine());
+        out.print("Matrícula do aluno: ");
+        String matricula = lerLinha();
+        Aluno aluno = buscarAlunoPorMatricula(matricula);
 
         if (aluno != null) {
             if (aluno.isEmAfastamento()) {
-                System.out.print("Aluno já está com o semestre trancado. Reativar? (S/N): ");
-                boolean reativar = scanner.nextLine().equalsIgnoreCase("N");
-                aluno.setEmAfastamento(!reativar);
-                System.out.println(reativar ? "Semestre reativado!" : "Permanece trancado.");
+                out.print("Aluno já está com o semestre trancado. Reativar? (S/N): ");
+                boolean reativar = lerLinha().equalsIgnoreCase("N");
+                if (reativar) {
+                    // outra sessao pode ter removido ou reativado o aluno durante a pergunta
+                    registro.comTravaDeLeitura(() -> {
+                        synchronized (aluno) {
+                            if (registro.buscarAluno(matricula) == aluno && aluno.isEmAfastamento()) {
+                                aluno.setEmAfastamento(false);
+                                journal.afastamentoAlterado(aluno);
+                            }
+                        }
+                        return null;
+                    });
+                }
+                compactarSeNecessario();
+                out.println(reativar ? "Semestre reativado!" : "Permanece trancado.");
             } else {
-                disciplinas.stream()
-                        .flatMap(d -> d.getTurmas().stream())
-                        .filter(t -> t.getAlunosMatriculados().contains(aluno))
-                        .forEach(t -> t.removerAluno(aluno));
-
-                aluno.setEmAfastamento(true);
-                System.out.println("Semestre trancado! Aluno removido de todas as disciplinas.");
+                // marca antes de tirar das turmas: uma matricula concorrente ja ve
+                // o semestre trancado e ninguem o promove da lista de espera
+                synchronized (aluno) {
+                    aluno.setEmAfastamento(true);
+                    journal.afastamentoAlterado(aluno);
+                }
+                registro.removerDasListasDeEspera(aluno, journal);
+                registro.removerMatriculas(aluno, journal);
+                compactarSeNecessario();
+                out.println("Semestre trancado! Aluno removido de todas as disciplinas.");
             }
         } else {
-            System.out.println("Aluno não encontrado!");
+            out.println("Aluno não encontrado!");
         }
     }
 
     private void matricularAluno() {
         while (true) {
-            System.out.print("\nMatrícula do aluno (ou '0' para sair): ");
-            String matricula = scanner.nextLine().trim();
+            out.print("\nMatrícula do aluno (ou '0' para sair): ");
+            String matricula = lerLinha().trim();
 
             if (matricula.equals("0")) {
                 return;
@@ -515,18 +842,23 @@ public class SistemaAlunos {
             Aluno aluno = buscarAlunoPorMatricula(matricula);
 
             if (aluno == null) {
-                System.out.println("Aluno não encontrado!");
+                out.println("Aluno não encontrado!");
                 continue;
             }
 
             if (aluno.isEmAfastamento()) {
-                System.out.println("Aluno com semestre trancado!");
+                out.println("Aluno com semestre trancado!");
+                continue;
+            }
+
+            if (!aluno.podeMatricular(aluno.getTotalTurmas())) {
+                out.println("Aluno especial atingiu o limite de disciplinas!");
                 continue;
             }
 
             while (true) {
-                System.out.print("\nCódigo da disciplina (ou '0' para voltar): ");
-                String codigoDisciplina = scanner.nextLine().trim();
+                out.print("\nCódigo da disciplina (ou '0' para voltar): ");
+                String codigoDisciplina = lerLinha().trim();
 
                 if (codigoDisciplina.equals("0")) {
                     break;
@@ -535,21 +867,26 @@ public class SistemaAlunos {
                 Disciplina disciplina = buscarDisciplinaPorCodigo(codigoDisciplina);
 
                 if (disciplina == null) {
-                    System.out.println("Disciplina não encontrada!");
+                    out.println("Disciplina não encontrada!");
                     continue;
                 }
 
                 if (!disciplina.getPrerequisitos().isEmpty()) {
-                    System.out.println("\nPré-requisitos necessários:");
-                    disciplina.getPrerequisitos().forEach(preReq -> System.out.println("- " + preReq));
+                    out.println("\nPré-requisitos necessários:");
+                    disciplina.getPrerequisitos().forEach(preReq -> out.println("- " + preReq));
 
                     if (!verificarPreRequisitos(aluno, disciplina)) {
-                        System.out.println("\nALUNO NÃO ATENDE AOS PRÉ-REQUISITOS!");
-                        System.out.println("1. Tentar outra disciplina");
-                        System.out.println("2. Voltar ao menu principal");
-                        System.out.print("Opção: ");
-
-                        String opcao = scanner.nextLine().trim();
+                        out.println("\nALUNO NÃO ATENDE AOS PRÉ-REQUISITOS!");
+                        DicionarioIds codigos = registro.getCodigosDisciplinas();
+                        StringJoiner faltantes = new StringJoiner(", ");
+                        registro.getGrafoPreRequisitos().getFaltantes(aluno, disciplina.getId())
+                                .forEach(id -> faltantes.add(codigos.texto(id)));
+                        out.println("Falta cursar, nesta ordem: " + faltantes);
+                        out.println("1. Tentar outra disciplina");
+                        out.println("2. Voltar ao menu principal");
+                        out.print("Opção: ");
+
+                        String opcao = lerLinha().trim();
                         if (opcao.equals("2")) {
                             return;
                         }
@@ -557,19 +894,19 @@ public class SistemaAlunos {
                     }
                 }
 
-                System.out.println("\nTurmas disponíveis:");
+                out.println("\nTurmas disponíveis:");
                 if (disciplina.getTurmas().isEmpty()) {
-                    System.out.println("Nenhuma turma disponível para esta disciplina!");
+                    out.println("Nenhuma turma disponível para esta disciplina!");
                     continue;
                 }
 
-                disciplina.getTurmas().forEach(t -> System.out.printf("%s - %s (%d vagas)\n",
+                disciplina.getTurmas().forEach(t -> out.printf("%s - %s (%d vagas)\n",
                         t.getCodigo(),
                         t.getHorario(),
                         t.getVagasDisponiveis()));
 
-                System.out.print("\nCódigo da turma (ou '0' para voltar): ");
-                String codigoTurma = scanner.nextLine().trim();
+                out.print("\nCódigo da turma (ou '0' para voltar): ");
+                String codigoTurma = lerLinha().trim();
 
                 if (codigoTurma.equals("0")) {
                     continue;
@@ -581,212 +918,256 @@ public class SistemaAlunos {
                         .orElse(null);
 
                 if (turma == null) {
-                    System.out.println("Turma não encontrada!");
+                    out.println("Turma não encontrada!");
                     continue;
                 }
 
-                if (turma.matricularAluno(aluno)) {
-                    System.out.println("\n Matrícula realizada com sucesso!");
-                    System.out.printf("Aluno: %s\nTurma: %s\nDisciplina: %s\n",
-                            aluno.getNome(),
-                            turma.getCodigo(),
-                            disciplina.getNome());
+                String situacao = matricular(aluno.getMatricula(), turma, false);
+                if (situacao.equals(Turma.MATRICULADO)) {
+                    informarMatricula(aluno, turma);
                     return;
+                } else if (!situacao.equals(Turma.LOTADA)) {
+                    out.println(situacao + "! Escolha outra turma.");
+                } else if (turma.getListaEspera().contem(aluno)) {
+                    out.printf("Turma lotada! Aluno já está na lista de espera (posição %d).\n",
+                            turma.getListaEspera().getPosicao(aluno));
                 } else {
-                    System.out.println("Turma lotada! Por favor, selecione outra.");
+                    out.print("Turma lotada! Entrar na lista de espera? (S/N): ");
+                    if (lerLinha().equalsIgnoreCase("S")) {
+                        // a vaga pode ter aberto durante a pergunta: tenta matricular antes
+                        situacao = matricular(aluno.getMatricula(), turma, true);
+                        if (situacao.equals(Turma.MATRICULADO)) {
+                            informarMatricula(aluno, turma);
+                        } else if (situacao.equals(Turma.NA_ESPERA)) {
+                            compactarSeNecessario();
+                            out.printf("Aluno na lista de espera da turma %s (posição %d). "
+                                    + "A matrícula é feita automaticamente quando abrir vaga.\n",
+                                    turma.getCodigo(), turma.getListaEspera().getPosicao(aluno));
+                        } else {
+                            out.println(situacao + "!");
+                        }
+                        return;
+                    }
+                    out.println("Por favor, selecione outra turma.");
                 }
             }
         }
     }
 
+    /**
+     * Matricula o aluno na turma ou, com {@code esperar}, poe na lista de
+     * espera se estiver lotada. Aluno e turma sao buscados de novo pelas chaves
+     * (a trava das operacoes foi solta a cada pergunta e eles podem ter saido
+     * do registro) e as regras sao checadas pela turma na mesma etapa que
+     * ocupa a vaga.
+     *
+     * @return situacao devolvida pela turma, ou o motivo de nao ter tentado
+     */
+    private String matricular(String matricula, Turma escolhida, boolean esperar) {
+        return registro.comTravaDeLeitura(() -> {
+            Aluno aluno = registro.buscarAluno(matricula);
+            if (aluno == null) {
+                return "Aluno não encontrado";
+            }
+            Turma turma = registro.buscarTurma(escolhida.getDisciplina().getCodigo(), escolhida.getCodigo());
+            if (turma == null) {
+                return "Turma não encontrada";
+            }
+            if (!esperar) {
+                return turma.matricular(aluno, journal);
+            }
+            double prioridade = esperaPorIra ? MatriculaEmLote.calcularIra(aluno) : 0.0;
+            return turma.matricularOuEsperar(aluno, prioridade, journal);
+        });
+    }
+
+    private void informarMatricula(Aluno aluno, Turma turma) {
+        compactarSeNecessario();
+        out.println("\n Matrícula realizada com sucesso!");
+        out.printf("Aluno: %s\nTurma: %s\nDisciplina: %s\n",
+                aluno.getNome(),
+                turma.getCodigo(),
+                turma.getDisciplina().getNome());
+    }
+
     private boolean verificarPreRequisitos(Aluno aluno, Disciplina disciplina) {
-        return disciplina.getPrerequisitos().stream()
-                .allMatch(preReq -> {
-                    return disciplinas.stream()
-                            .filter(d -> d.getCodigo().equals(preReq))
-                            .flatMap(d -> d.getTurmas().stream())
-                            .anyMatch(t -> t.getAlunosMatriculados().contains(aluno) &&
-                                    t.verificarAprovacao(aluno).equals("Aprovado"));
-                });
+        return disciplina.preRequisitosAtendidos(aluno);
     }
 
     private boolean isMatriculaDuplicada(String matricula) {
-        return alunos.stream().anyMatch(a -> a.getMatricula().equals(matricula));
+        return registro.existeAluno(matricula);
     }
 
     private Aluno buscarAlunoPorMatricula(String matricula) {
-        return alunos.stream()
-                .filter(a -> a.getMatricula().equals(matricula))
-                .findFirst()
-                .orElse(null);
+        return registro.buscarAluno(matricula);
     }
 
     private Disciplina buscarDisciplinaPorCodigo(String codigo) {
-        return disciplinas.stream()
-                .filter(d -> d.getCodigo().equals(codigo))
-                .findFirst()
-                .orElse(null);
+        return registro.buscarDisciplina(codigo);
     }
 
     private Professor buscarProfessor(String matricula) {
-        return professores.stream()
-                .filter(p -> p.getMatricula().equals(matricula))
-                .findFirst()
-                .orElse(null);
+        return registro.buscarProfessor(matricula);
     }
 
     private void listarAlunos() {
-        System.out.println("\n--- LISTA DE ALUNOS ---");
-        alunos.forEach(System.out::println);
-        System.out.println();
+        out.println("\n--- LISTA DE ALUNOS ---");
+        registro.getAlunos().forEach(out::println);
+        out.println();
     }
 
     private void listarDisciplinas() {
-        System.out.println("\n--- LISTA DE DISCIPLINAS ---");
-        disciplinas.forEach(d -> System.out.println(d.getInfo()));
-        System.out.println();
+        out.println("\n--- LISTA DE DISCIPLINAS ---");
+        registro.getDisciplinas().forEach(d -> out.println(d.getInfo()));
+        out.println();
     }
 
     private void listarProfessores() {
-        System.out.println("\n--- LISTA DE PROFESSORES ---");
-        professores.forEach(p -> System.out.println(p.getInfo()));
-        System.out.println();
+        out.println("\n--- LISTA DE PROFESSORES ---");
+        registro.getProfessores().forEach(p -> out.println(p.getInfo()));
+        out.println();
     }
 
     private void menuNotasFaltas() {
-        System.out.println("\n--- GERENCIAR NOTAS E FALTAS ---");
-        System.out.println("1. Registrar notas");
-        System.out.println("2. Registrar faltas");
-        System.out.println("3. Voltar");
-        System.out.print("Opção: ");
-
-        String opcao = scanner.nextLine();
+        out.println("\n--- GERENCIAR NOTAS E FALTAS ---");
+        out.println("1. Registrar notas");
+        out.println("2. Registrar faltas");
+        out.println("3. Registrar chamada de uma aula");
+        out.println("4. Voltar");
+        out.print("Opção: ");
+
+        String opcao = lerLinha();
         switch (opcao) {
             case "1" -> registrarNotas();
             case "2" -> registrarFaltas();
+            case "3" -> registrarChamada();
         }
     }
 
     private void registrarNotas() {
-        System.out.println("\n--- REGISTRAR NOTAS ---");
+        out.println("\n--- REGISTRAR NOTAS ---");
 
-        System.out.print("Matrícula do aluno: ");
-        Aluno aluno = buscarAlunoPorMatricula(scanner.nextLine());
+        out.print("Matrícula do aluno: ");
+        Aluno aluno = buscarAlunoPorMatricula(lerLinha());
         if (aluno == null) {
-            System.out.println("Aluno não encontrado!");
+            out.println("Aluno não encontrado!");
             return;
         }
 
-        System.out.print("Código da disciplina: ");
-        Disciplina disciplina = buscarDisciplinaPorCodigo(scanner.nextLine());
+        out.print("Código da disciplina: ");
+        Disciplina disciplina = buscarDisciplinaPorCodigo(lerLinha());
         if (disciplina == null) {
-            System.out.println("Disciplina não encontrada!");
+            out.println("Disciplina não encontrada!");
             return;
         }
 
-        System.out.println("Turmas disponíveis:");
-        disciplina.getTurmas().forEach(t -> System.out.println(t.getCodigo() + " - " + t.getHorario()));
+        out.println("Turmas disponíveis:");
+        disciplina.getTurmas().forEach(t -> out.println(t.getCodigo() + " - " + t.getHorario()));
 
-        System.out.print("Código da turma: ");
+        out.print("Código da turma: ");
         Turma turma = disciplina.getTurmas().stream()
-                .filter(t -> t.getCodigo().equals(scanner.nextLine()))
+                .filter(t -> t.getCodigo().equals(lerLinha()))
                 .findFirst()
                 .orElse(null);
 
         if (turma == null) {
-            System.out.println("Turma não encontrada!");
+            out.println("Turma não encontrada!");
             return;
         }
 
-        if (!turma.getAlunosMatriculados().contains(aluno)) {
-            System.out.println("Aluno não está matriculado nesta turma!");
+        if (!turma.isMatriculado(aluno)) {
+            out.println("Aluno não está matriculado nesta turma!");
             return;
         }
         boolean continuar = true;
         while (continuar) {
-            System.out.println("\nNotas atuais do aluno:");
+            out.println("\nNotas atuais do aluno:");
             Map<String, Double> notas = turma.getNotas(aluno);
             if (notas.isEmpty()) {
-                System.out.println("Nenhuma nota registrada ainda.");
+                out.println("Nenhuma nota registrada ainda.");
             } else {
-                notas.forEach((tipo, nota) -> System.out.printf("- %s: %.1f\n", tipo, nota));
+                notas.forEach((tipo, nota) -> out.printf("- %s: %.1f\n", tipo, nota));
             }
 
-            System.out.print("Tipo de avaliação (P1/P2/P3/L/S): ");
-            String tipo = scanner.nextLine();
+            out.print("Tipo de avaliação (P1/P2/P3/L/S): ");
+            String tipo = lerLinha();
 
-            System.out.print("Nota (0-10): ");
+            out.print("Nota (0-10): ");
             try {
-                double nota = Double.parseDouble(scanner.nextLine());
+                double nota = Double.parseDouble(lerLinha());
                 if (nota < 0 || nota > 10) {
-                    System.out.println("Nota deve estar entre 0 e 10!");
+                    out.println("Nota deve estar entre 0 e 10!");
                 } else {
-                    turma.registrarNota(aluno, tipo, nota);
-                    System.out.println("Nota registrada com sucesso!");
+                    turma.registrarNota(aluno, tipo, nota, journal);
+                    compactarSeNecessario();
+                    out.println("Nota registrada com sucesso!");
 
-                    System.out.print("\nDeseja registrar outra nota? (S/N): ");
-                    String resposta = scanner.nextLine();
+                    out.print("\nDeseja registrar outra nota? (S/N): ");
+                    String resposta = lerLinha();
                     continuar = resposta.equalsIgnoreCase("S");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("Valor inválido para nota!");
+                out.println("Valor inválido para nota!");
 
-                System.out.print("Deseja tentar novamente? (S/N): ");
-                String resposta = scanner.nextLine();
+                out.print("Deseja tentar novamente? (S/N): ");
+                String resposta = lerLinha();
                 continuar = resposta.equalsIgnoreCase("S");
+            } catch (IllegalArgumentException e) { // aluno saiu da turma durante as perguntas
+                out.println(e.getMessage() + "!");
+                return;
             }
         }
 
-        System.out.println("\nVoltando ao menu anterior...");
+        out.println("\nVoltando ao menu anterior...");
     }
 
     private void registrarFaltas() {
-        System.out.println("\n--- REGISTRAR FALTAS ---");
+        out.println("\n--- REGISTRAR FALTAS ---");
 
-        System.out.print("Matrícula do aluno: ");
-        Aluno aluno = buscarAlunoPorMatricula(scanner.nextLine());
+        out.print("Matrícula do aluno: ");
+        Aluno aluno = buscarAlunoPorMatricula(lerLinha());
         if (aluno == null) {
-            System.out.println("Aluno não encontrado!");
+            out.println("Aluno não encontrado!");
             return;
         }
 
-        System.out.print("Código da disciplina: ");
-        Disciplina disciplina = buscarDisciplinaPorCodigo(scanner.nextLine());
+        out.print("Código da disciplina: ");
+        Disciplina disciplina = buscarDisciplinaPorCodigo(lerLinha());
         if (disciplina == null) {
-            System.out.println("Disciplina não encontrada!");
+            out.println("Disciplina não encontrada!");
             return;
         }
 
-        System.out.println("Turmas disponíveis:");
-        disciplina.getTurmas().forEach(t -> System.out.println(t.getCodigo() + " - " + t.getHorario()));
+        out.println("Turmas disponíveis:");
+        disciplina.getTurmas().forEach(t -> out.println(t.getCodigo() + " - " + t.getHorario()));
 
-        System.out.print("Código da turma: ");
+        out.print("Código da turma: ");
         Turma turma = disciplina.getTurmas().stream()
-                .filter(t -> t.getCodigo().equals(scanner.nextLine()))
+                .filter(t -> t.getCodigo().equals(lerLinha()))
                 .findFirst()
                 .orElse(null);
 
         if (turma == null) {
-            System.out.println("Turma não encontrada!");
+            out.println("Turma não encontrada!");
             return;
         }
 
-        if (!turma.getAlunosMatriculados().contains(aluno)) {
-            System.out.println("Aluno não está matriculado nesta turma!");
+        if (!turma.isMatriculado(aluno)) {
+            out.println("Aluno não está matriculado nesta turma!");
             return;
         }
 
         int faltasAtuais = turma.getFaltas(aluno);
-        System.out.printf("\nSituação atual: %d faltas de %d aulas (%.1f%% de frequência)\n",
+        out.printf("\nSituação atual: %d faltas de %d aulas (%.1f%% de frequência)\n",
                 faltasAtuais,
                 turma.getTotalAulas(),
                 turma.calcularFrequencia(aluno));
 
-        System.out.print("\nQuantas faltas deseja registrar? (1, 2, 3, etc.): ");
+        out.print("\nQuantas faltas deseja registrar? (1, 2, 3, etc.): ");
         try {
-            int quantidade = Integer.parseInt(scanner.nextLine());
+            int quantidade = Integer.parseInt(lerLinha());
             if (quantidade <= 0) {
-                System.out.println("Quantidade inválida! Deve ser maior que zero.");
+                out.println("Quantidade inválida! Deve ser maior que zero.");
                 return;
             }
 
@@ -794,90 +1175,172 @@ public class SistemaAlunos {
             int maxFaltasPermitidas = (int) Math.ceil(turma.getTotalAulas() * 0.25);
 
             if (novasFaltas > turma.getTotalAulas()) {
-                System.out.println("Aviso: O aluno não pode ter mais faltas que o total de aulas!");
-                System.out.printf("Total de aulas: %d | Faltas após registro: %d\n",
+                out.println("Erro: O aluno não pode ter mais faltas que o total de aulas!");
+                out.printf("Total de aulas: %d | Faltas após registro: %d\n",
                         turma.getTotalAulas(), novasFaltas);
-                System.out.print("Deseja continuar mesmo assim? (S/N): ");
-                String confirmacao = scanner.nextLine();
-                if (!confirmacao.equalsIgnoreCase("S")) {
-                    return;
-                }
+                return;
             } else if (novasFaltas > maxFaltasPermitidas) {
-                System.out.printf("Aviso: O aluno ultrapassará o limite de faltas (máximo %d faltas permitidas)!\n",
+                out.printf("Aviso: O aluno ultrapassará o limite de faltas (máximo %d faltas permitidas)!\n",
                         maxFaltasPermitidas);
-                System.out.printf("Faltas após registro: %d | Frequência: %.1f%%\n",
+                out.printf("Faltas após registro: %d | Frequência: %.1f%%\n",
                         novasFaltas,
                         100 - ((novasFaltas * 100.0) / turma.getTotalAulas()));
-                System.out.print("Deseja continuar mesmo assim? (S/N): ");
-                String confirmacao = scanner.nextLine();
+                out.print("Deseja continuar mesmo assim? (S/N): ");
+                String confirmacao = lerLinha();
                 if (!confirmacao.equalsIgnoreCase("S")) {
                     return;
                 }
             }
 
-            for (int i = 0; i < quantidade; i++) {
-                turma.registrarFalta(aluno);
-            }
+            turma.registrarFaltas(aluno, quantidade, journal);
+            compactarSeNecessario();
 
-            System.out.printf("\n%d faltas registradas com sucesso!\n", quantidade);
-            System.out.printf("Situação atualizada: %d faltas de %d aulas (%.1f%% de frequência)\n",
+            out.printf("\n%d faltas registradas com sucesso!\n", quantidade);
+            out.printf("Situação atualizada: %d faltas de %d aulas (%.1f%% de frequência)\n",
                     turma.getFaltas(aluno),
                     turma.getTotalAulas(),
                     turma.calcularFrequencia(aluno));
 
             if (turma.calcularFrequencia(aluno) < 75) {
-                System.out.println("ATENÇÃO: Aluno agora está REPROVADO POR FALTA!");
+                out.println("ATENÇÃO: Aluno agora está REPROVADO POR FALTA!");
             }
         } catch (NumberFormatException e) {
-            System.out.println("Quantidade inválida! Digite um número.");
+            out.println("Quantidade inválida! Digite um número.");
+        } catch (IllegalArgumentException e) { // a turma recheca matricula e total de faltas
+            out.println("Erro: " + e.getMessage() + "!");
         }
     }
 
-    public void gerarRelatorios() {
-        System.out.println("\n--- RELATÓRIOS ---");
-        System.out.println("1. Por Disciplina");
-        System.out.println("2. Por professor");
-        System.out.println("3. Por aluno");
-        System.out.print("Opção: ");
+    private void registrarChamada() {
+        out.println("\n--- REGISTRAR CHAMADA ---");
+
+        out.print("Código da disciplina: ");
+        String codigoDisciplina = lerLinha();
+        out.print("Código da turma: ");
+        Turma turma = registro.buscarTurma(codigoDisciplina, lerLinha());
+        if (turma == null) {
+            out.println("Turma não encontrada!");
+            return;
+        }
+        if (turma.getTotalAulas() == 0) {
+            out.println("Turma sem aulas cadastradas!");
+            return;
+        }
+
+        out.printf("Número da aula (1 a %d): ", turma.getTotalAulas());
+        int aula;
+        try {
+            aula = Integer.parseInt(lerLinha());
+        } catch (NumberFormatException e) {
+            out.println("Número inválido!");
+            return;
+        }
+        if (aula < 1 || aula > turma.getTotalAulas()) {
+            out.println("Aula inválida!");
+            return;
+        }
 
-        switch (scanner.nextLine()) {
+        out.println("Alunos da turma:");
+        turma.getMatriculados().forEach(a -> out.printf("- %s (%s)%s\n",
+                a.getNome(), a.getMatricula(), turma.isFalta(a, aula) ? " [falta]" : ""));
+
+        out.print("Matrículas dos ausentes, separadas por vírgula (enter se todos presentes): ");
+        List<Aluno> ausentes = new ArrayList<>();
+        for (String matricula : lerLinha().split(",")) {
+            if (matricula.isBlank()) {
+                continue;
+            }
+            Aluno aluno = buscarAlunoPorMatricula(matricula.trim());
+            if (aluno == null || !turma.isMatriculado(aluno)) {
+                out.println("Aluno não está matriculado nesta turma: " + matricula.trim());
+                return;
+            }
+            if (!ausentes.contains(aluno)) {
+                ausentes.add(aluno);
+            }
+        }
+
+        try {
+            turma.registrarChamada(aula, ausentes, journal);
+        } catch (IllegalArgumentException e) { // algum ausente saiu da turma depois da pergunta
+            out.println(e.getMessage() + "!");
+            return;
+        }
+        compactarSeNecessario();
+        out.printf("Chamada da aula %d registrada: %d presentes, %d ausentes.\n",
+                aula, turma.getTotalMatriculados() - ausentes.size(), ausentes.size());
+    }
+
+    public void gerarRelatorios() {
+        out.println("\n--- RELATÓRIOS ---");
+        out.println("1. Por Disciplina");
+        out.println("2. Por professor");
+        out.println("3. Por aluno");
+        out.println("4. Exportar desempenho de todos os alunos (CSV)");
+        out.print("Opção: ");
+
+        switch (lerLinha()) {
             case "1" -> relatorioPorDisciplina();
             case "2" -> relatorioPorProfessor();
             case "3" -> relatorioPorAluno();
+            case "4" -> exportarDesempenho();
+        }
+    }
+
+    private void exportarDesempenho() {
+        String arquivo = "desempenho_alunos.csv";
+        try {
+            CsvService.saveToCsv(arquivo,
+                    registro.getTurmas().stream()
+                            .flatMap(t -> t.getMatriculados().stream()
+                                    .map(a -> new AlunoNaTurma(t, a))),
+                    new DesempenhoCsvFormatter());
+            out.println("Relatório exportado para " + CsvService.DATA_DIR + arquivo);
+        } catch (IOException e) {
+            out.println("Erro ao exportar relatório: " + e.getMessage());
         }
     }
 
     private void relatorioPorAluno() {
-        System.out.print("Matrícula do aluno: ");
-        Aluno aluno = buscarAlunoPorMatricula(scanner.nextLine());
+        out.print("Matrícula do aluno: ");
+        Aluno aluno = buscarAlunoPorMatricula(lerLinha());
 
         if (aluno == null) {
-            System.out.println("Aluno não encontrado!");
+            out.println("Aluno não encontrado!");
             return;
         }
 
-        System.out.println("\n1. Relatório simplificado");
-        System.out.println("2. Relatório completo");
-        System.out.print("Opção: ");
+        out.println("\n1. Relatório simplificado");
+        out.println("2. Relatório completo");
+        out.print("Opção: ");
 
-        boolean completo = scanner.nextLine().equals("2");
+        boolean completo = lerLinha().equals("2");
 
-        System.out.printf("\nRelatório do Aluno: %s\n", aluno.getNome());
-        disciplinas.stream()
-                .flatMap(d -> d.getTurmas().stream())
-                .filter(t -> t.getAlunosMatriculados().contains(aluno))
+        out.printf("\nRelatório do Aluno: %s\n", aluno.getNome());
+        aluno.getTurmas().stream()
+                .sorted(Comparator.comparingInt(Turma::getId))
                 .forEach(turma -> {
-                    System.out.printf("\nDisciplina: %s\n", turma.getDisciplina().getNome());
+                    out.printf("\nDisciplina: %s\n", turma.getDisciplina().getNome());
                     if (completo) {
-                        System.out.printf("Professor: %s\n", turma.getProfessor().getNome());
-                        System.out.printf("Modalidade: %s\n", turma.isPresencial() ? "Presencial" : "Remoto");
-                        System.out.printf("Carga horária: %dh\n", turma.getDisciplina().getCargaHoraria());
-                        System.out.printf("Método de avaliação: %s\n", turma.getMetodoAvaliacao());
+                        out.printf("Professor: %s\n", turma.getProfessor().getNome());
+                        out.printf("Modalidade: %s\n", turma.isPresencial() ? "Presencial" : "Remoto");
+                        out.printf("Carga horária: %dh\n", turma.getDisciplina().getCargaHoraria());
+                        out.printf("Método de avaliação: %s\n", turma.getMetodoAvaliacao());
 
                         Map<String, Double> notas = turma.getNotas(aluno);
                         if (!notas.isEmpty()) {
-                            System.out.println("\nNotas individuais:");
-                            notas.forEach((tipo, nota) -> System.out.printf("- %s: %.1f\n", tipo, nota));
+                            out.println("\nNotas individuais:");
+                            notas.forEach((tipo, nota) -> out.printf("- %s: %.1f\n", tipo, nota));
+                        }
+
+                        if (turma.getFaltas(aluno) > 0) {
+                            StringJoiner aulas = new StringJoiner(", ");
+                            for (int aula = 1; aula <= turma.getTotalAulas(); aula++) {
+                                if (turma.isFalta(aluno, aula)) {
+                                    aulas.add(String.valueOf(aula));
+                                }
+                            }
+                            out.println("Faltas nas aulas: " + aulas);
                         }
                     }
 
@@ -885,45 +1348,45 @@ public class SistemaAlunos {
                     double frequencia = turma.calcularFrequencia(aluno);
                     String situacao = turma.verificarAprovacao(aluno);
 
-                    System.out.printf("\nMédia: %.1f - Frequência: %.1f%% - %s\n",
+                    out.printf("\nMédia: %.1f - Frequência: %.1f%% - %s\n",
                             media,
                             frequencia,
                             situacao);
 
-                    if (turma.getNotas(aluno).isEmpty()) {
-                        System.out.println("AVISO: Nenhuma nota registrada para esta disciplina!");
+                    if (!turma.possuiNotas(aluno)) {
+                        out.println("AVISO: Nenhuma nota registrada para esta disciplina!");
                     }
                 });
-        System.out.println();
+        out.println();
     }
 
     private void relatorioPorDisciplina() {
-        System.out.println("\n--- RELATÓRIO POR DISCIPLINA ---");
-        System.out.println("Disciplinas disponíveis:");
-        disciplinas.forEach(d -> System.out.printf("- %s (%s)\n", d.getNome(), d.getCodigo()));
+        out.println("\n--- RELATÓRIO POR DISCIPLINA ---");
+        out.println("Disciplinas disponíveis:");
+        registro.getDisciplinas().forEach(d -> out.printf("- %s (%s)\n", d.getNome(), d.getCodigo()));
 
-        System.out.print("\nCódigo da disciplina: ");
-        Disciplina disciplina = buscarDisciplinaPorCodigo(scanner.nextLine());
+        out.print("\nCódigo da disciplina: ");
+        Disciplina disciplina = buscarDisciplinaPorCodigo(lerLinha());
 
         if (disciplina == null) {
-            System.out.println("Disciplina não encontrada!");
+            out.println("Disciplina não encontrada!");
             return;
         }
 
-        System.out.println("\nTurmas disponíveis para " + disciplina.getNome() + ":");
+        out.println("\nTurmas disponíveis para " + disciplina.getNome() + ":");
         if (disciplina.getTurmas().isEmpty()) {
-            System.out.println("Nenhuma turma cadastrada para esta disciplina!");
+            out.println("Nenhuma turma cadastrada para esta disciplina!");
             return;
         }
 
-        disciplina.getTurmas().forEach(t -> System.out.printf("- %s (Prof. %s, %s, %d alunos)\n",
+        disciplina.getTurmas().forEach(t -> out.printf("- %s (Prof. %s, %s, %d alunos)\n",
                 t.getCodigo(),
                 t.getProfessor().getNome(),
                 t.getHorario(),
-                t.getAlunosMatriculados().size()));
+                t.getTotalMatriculados()));
 
-        System.out.print("\nCódigo da turma: ");
-        String codigoTurma = scanner.nextLine();
+        out.print("\nCódigo da turma: ");
+        String codigoTurma = lerLinha();
 
         Turma turma = disciplina.getTurmas().stream()
                 .filter(t -> t.getCodigo().equalsIgnoreCase(codigoTurma))
@@ -931,152 +1394,174 @@ public class SistemaAlunos {
                 .orElse(null);
 
         if (turma == null) {
-            System.out.println("Turma não encontrada!");
+            out.println("Turma não encontrada!");
             return;
         }
-        System.out.printf("\n=== RELATÓRIO DETALHADO ===\n");
-        System.out.printf("Disciplina: %s (%s)\n", disciplina.getNome(), disciplina.getCodigo());
-        System.out.printf("Turma: %s | Professor: %s\n", turma.getCodigo(), turma.getProfessor().getNome());
-        System.out.printf("Horário: %s | %s\n", turma.getHorario(), turma.isPresencial() ? "Presencial" : "Remoto");
-        System.out.printf("Método de avaliação: %s | Total de aulas: %d\n", turma.getMetodoAvaliacao(),
+        out.printf("\n=== RELATÓRIO DETALHADO ===\n");
+        out.printf("Disciplina: %s (%s)\n", disciplina.getNome(), disciplina.getCodigo());
+        out.printf("Turma: %s | Professor: %s\n", turma.getCodigo(), turma.getProfessor().getNome());
+        out.printf("Horário: %s | %s\n", turma.getHorario(), turma.isPresencial() ? "Presencial" : "Remoto");
+        out.printf("Método de avaliação: %s | Total de aulas: %d\n", turma.getMetodoAvaliacao(),
                 turma.getTotalAulas());
 
-        System.out.println("\nALUNOS MATRICULADOS (" + turma.getAlunosMatriculados().size() + "):");
-        System.out.println("------------------------------------------------------------");
-        System.out.printf("%-25s %-10s %-12s %s\n", "NOME", "MÉDIA", "FREQUÊNCIA", "SITUAÇÃO");
-        System.out.println("------------------------------------------------------------");
+        out.println("\nALUNOS MATRICULADOS (" + turma.getTotalMatriculados() + "):");
+        out.println("------------------------------------------------------------");
+        out.printf("%-25s %-10s %-12s %s\n", "NOME", "MÉDIA", "FREQUÊNCIA", "SITUAÇÃO");
+        out.println("------------------------------------------------------------");
 
-        turma.getAlunosMatriculados().forEach(aluno -> {
-            System.out.printf("%-25s %-10.1f %-12.1f%% %s\n",
+        turma.getMatriculados().forEach(aluno -> {
+            out.printf("%-25s %-10.1f %-12.1f%% %s\n",
                     aluno.getNome(),
                     turma.calcularMedia(aluno),
                     turma.calcularFrequencia(aluno),
                     turma.verificarAprovacao(aluno));
         });
 
-        double mediaTurma = turma.getAlunosMatriculados().stream()
-                .mapToDouble(turma::calcularMedia)
-                .average()
-                .orElse(0.0);
-
-        double freqMedia = turma.getAlunosMatriculados().stream()
-                .mapToDouble(turma::calcularFrequencia)
-                .average()
-                .orElse(0.0);
-
-        long aprovados = turma.getAlunosMatriculados().stream()
-                .filter(a -> turma.verificarAprovacao(a).equals("Aprovado"))
-                .count();
-
-        System.out.println("------------------------------------------------------------");
-        System.out.printf("RESUMO: Média da turma: %.1f | Frequência média: %.1f%% | Aprovados: %d/%d\n\n",
-                mediaTurma, freqMedia, aprovados, turma.getAlunosMatriculados().size());
+        out.println("------------------------------------------------------------");
+        out.printf("RESUMO: Média da turma: %.1f | Frequência média: %.1f%% | Aprovados: %d/%d\n\n",
+                turma.getMediaTurma(), turma.getFrequenciaMedia(), turma.getTotalAprovados(),
+                turma.getTotalMatriculados());
     }
 
     private void relatorioPorProfessor() {
-        System.out.print("Matrícula do professor: ");
-        String matricula = scanner.nextLine();
+        out.print("Matrícula do professor: ");
+        String matricula = lerLinha();
         Professor professor = buscarProfessor(matricula);
 
         if (professor != null) {
-            System.out.printf("\nRELATÓRIO DO PROFESSOR: %s (%s)\n",
+            out.printf("\nRELATÓRIO DO PROFESSOR: %s (%s)\n",
                     professor.getNome(), professor.getMatricula());
-            System.out.println("Departamento: " + professor.getDepartamento());
-            System.out.println("Total de turmas: " + professor.getTurmasMinistradas().size());
-            System.out.println("----------------------------------");
+            out.println("Departamento: " + professor.getDepartamento());
+            out.println("Total de turmas: " + professor.getTurmasMinistradas().size());
+            out.println("----------------------------------");
 
             professor.getTurmasMinistradas().forEach(turma -> {
                 Disciplina disciplina = turma.getDisciplina();
 
-                System.out.printf("\nDISCIPLINA: %s (%s)\n",
+                out.printf("\nDISCIPLINA: %s (%s)\n",
                         disciplina.getNome(), disciplina.getCodigo());
-                System.out.println("Turma: " + turma.getCodigo());
-                System.out.println("Horário: " + turma.getHorario());
-                System.out.println("Modalidade: " + (turma.isPresencial() ? "Presencial" : "Remoto"));
-
-                long totalAlunos = turma.getAlunosMatriculados().size();
-                long aprovados = turma.getAlunosMatriculados().stream()
-                        .filter(a -> turma.verificarAprovacao(a).equals("Aprovado"))
-                        .count();
+                out.println("Turma: " + turma.getCodigo());
+                out.println("Horário: " + turma.getHorario());
+                out.println("Modalidade: " + (turma.isPresencial() ? "Presencial" : "Remoto"));
 
-                double mediaTurma = turma.getAlunosMatriculados().stream()
-                        .mapToDouble(turma::calcularMedia)
-                        .average()
-                        .orElse(0.0);
+                int totalAlunos = turma.getTotalMatriculados();
+                int aprovados = turma.getTotalAprovados();
 
-                System.out.printf("\nDESEMPENHO: %d alunos | %d aprovados (%.1f%%) | Média da turma: %.1f\n",
+                out.printf("\nDESEMPENHO: %d alunos | %d aprovados (%.1f%%) | Média da turma: %.1f\n",
                         totalAlunos, aprovados,
                         totalAlunos > 0 ? (aprovados * 100.0 / totalAlunos) : 0,
-                        mediaTurma);
-
-                List<Aluno> alunosAtencao = turma.getAlunosMatriculados().stream()
-                        .filter(a -> {
-                            String status = turma.verificarAprovacao(a);
-                            return !status.equals("Aprovado");
-                        })
-                        .collect(Collectors.toList());
-
-                if (!alunosAtencao.isEmpty()) {
-                    System.out.println("\nALUNOS QUE NECESSITAM ATENÇÃO:");
-                    alunosAtencao.forEach(a -> {
-                        System.out.printf("- %s (%s): %s | Média %.1f | Frequência %.1f%%\n",
-                                a.getNome(), a.getMatricula(),
-                                turma.verificarAprovacao(a),
-                                turma.calcularMedia(a),
-                                turma.calcularFrequencia(a));
-                    });
+                        turma.getMediaTurma());
+
+                if (aprovados < totalAlunos) {
+                    out.println("\nALUNOS QUE NECESSITAM ATENÇÃO:");
+                    turma.getMatriculados().stream()
+                            .filter(a -> !turma.verificarAprovacao(a).equals(Turma.APROVADO))
+                            .forEach(a -> out.printf("- %s (%s): %s | Média %.1f | Frequência %.1f%%\n",
+                                    a.getNome(), a.getMatricula(),
+                                    turma.verificarAprovacao(a),
+                                    turma.calcularMedia(a),
+                                    turma.calcularFrequencia(a)));
                 }
             });
         } else {
-            System.out.println("Professor não encontrado!");
+            out.println("Professor não encontrado!");
         }
     }
 
+    /**
+     * Grava tudo e esvazia o journal. Espera os comandos das outras sessoes
+     * terminarem e nenhum comeca enquanto grava.
+     */
     public void saveAllToCsv() {
+        int leituras = operacoes.getReadHoldCount(); // chamado de dentro de um comando
+        for (int i = 0; i < leituras; i++) {
+            operacoes.readLock().unlock();
+        }
+        operacoes.writeLock().lock();
+        try {
+            gravarTudo();
+        } finally {
+            operacoes.writeLock().unlock();
+            for (int i = 0; i < leituras; i++) {
+                operacoes.readLock().lock();
+            }
+        }
+    }
+
+    private void gravarTudo() {
         try {
-            CsvService.saveToCsv("alunos.csv", alunos, new AlunoCsvFormatter());
-            CsvService.saveToCsv("disciplinas.csv", disciplinas, new DisciplinaCsvFormatter());
-            CsvService.saveToCsv("professores.csv", professores, new ProfessorCsvFormatter());
+            int gravados = 0;
+            if (registro.isAlunosAlterados() || !CsvService.exists("alunos.csv")) {
+                CsvService.saveToCsv("alunos.csv", registro.getAlunos(), new AlunoCsvFormatter());
+                gravados++;
+            }
+            if (registro.isDisciplinasAlteradas() || !CsvService.exists("disciplinas.csv")) {
+                CsvService.saveToCsv("disciplinas.csv", registro.getDisciplinas(), new DisciplinaCsvFormatter());
+                gravados++;
+            }
+            if (registro.isProfessoresAlterados() || !CsvService.exists("professores.csv")) {
+                CsvService.saveToCsv("professores.csv", registro.getProfessores(), new ProfessorCsvFormatter());
+                gravados++;
+            }
+            if (registro.isTurmasAlteradas() || !CsvService.exists("turmas.csv")) {
+                saveTurmasToCsv();
+                gravados++;
+            }
+            if (registro.isNotasAlteradas() || !CsvService.exists("notas.csv")) {
+                saveNotasToCsv();
+                gravados++;
+            }
+            if (registro.isListasEsperaAlteradas() || !CsvService.exists(ARQUIVO_ESPERA)) {
+                CsvService.saveToCsv(ARQUIVO_ESPERA,
+                        registro.getTurmas().stream().flatMap(t -> t.getListaEspera().getEntradas().stream()
+                                .map(e -> new AlunoNaTurma(t, e.aluno()))),
+                        new EsperaCsvFormatter());
+                gravados++;
+            }
 
-            saveTurmasToCsv();
+            out.printf("Dados salvos em CSV com sucesso! (%d arquivos atualizados)%n", gravados);
 
-            System.out.println("Dados salvos em CSV com sucesso!");
+            if (gravados > 0 || !SnapshotBinario.arquivo().exists()) {
+                SnapshotBinario.salvar(registro);
+            }
+
+            registro.marcarSalvo();
+            journal.limpar();
         } catch (IOException e) {
-            System.out.println("Erro ao salvar dados: " + e.getMessage());
+            out.println("Erro ao salvar dados: " + e.getMessage());
         }
     }
 
     private void saveTurmasToCsv() throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter("data/turmas.csv"))) {
-            writer.println(
-                    "codigo,disciplinaCodigo,professorMatricula,semestre,metodoAvaliacao,presencial,sala,horario,capacidadeMaxima,totalAulas,alunosMatriculados");
-
-            for (Disciplina disciplina : disciplinas) {
-                for (Turma turma : disciplina.getTurmas()) {
-                    String alunosStr = turma.getAlunosMatriculados().stream()
-                            .map(Aluno::getMatricula)
-                            .collect(Collectors.joining(";"));
-
-                    writer.println(String.format("%s,%s,%s,%s,%s,%s,%s,%s,%d,%d,%s",
-                            turma.getCodigo(),
-                            disciplina.getCodigo(),
-                            turma.getProfessor().getMatricula(),
-                            turma.getSemestre(),
-                            turma.getMetodoAvaliacao(),
-                            turma.isPresencial(),
-                            turma.getSala() != null ? turma.getSala() : "",
-                            turma.getHorario(),
-                            turma.getCapacidadeMaxima(),
-                            turma.getTotalAulas(),
-                            alunosStr));
-                }
-            }
-        }
+        List<Turma> turmas = registro.getDisciplinas().stream()
+                .flatMap(d -> d.getTurmas().stream())
+                .collect(Collectors.toList());
+        CsvService.saveToCsv("turmas.csv", turmas, new TurmaCsvFormatter());
+    }
+
+    private void saveNotasToCsv() throws IOException {
+        CsvService.saveToCsv("notas.csv",
+                registro.getDisciplinas().stream()
+                        .flatMap(d -> d.getTurmas().stream())
+                        .flatMap(t -> t.getMatriculados().stream()
+                                .filter(t::possuiLancamentos)
+                                .map(a -> new AlunoNaTurma(t, a))),
+                new NotasCsvFormatter());
     }
 
-    public static void main(String[] args) {
+    /**
+     * {@code java SistemaAlunos} abre o menu no terminal; {@code java
+     * SistemaAlunos --servidor [porta]} atende varias sessoes por TCP (ver
+     * {@link ServidorSessoes}).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
         SistemaAlunos sistema = new SistemaAlunos();
         sistema.loadAllFromCsv();
-        sistema.exibirMenu();
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            int porta = args.length > 1 ? Integer.parseInt(args[1]) : ServidorSessoes.PORTA_PADRAO;
+            ServidorSessoes.executar(sistema, porta);
+        } else {
+            sistema.exibirMenu();
+        }
     }
 }
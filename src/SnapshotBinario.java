@@ -0,0 +1,329 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copia binaria de todo o registro, gravada ao lado dos CSVs para acelerar a
+ * inicializacao. O CSV continua sendo o formato de troca; o snapshot so e usado
+ * quando e mais novo que todos os CSVs.
+ *
+ * Formato (inteiros big-endian):
+ * <pre>
+ * MAGIC VERSAO
+ * dicionario: n, n x (tamanho, bytes UTF-8)
+ * ids de alunos, disciplinas, professores e turmas: 4 x (n, n x texto)
+ * professores: n, n x (id nome departamento)
+ * disciplinas: n, n x (id nome cargaHoraria k k x idPrerequisito)
+ * alunos: n, n x (id nome curso flags)
+ * turmas: n, n x (idDisciplina codigo idProfessor semestre metodo flags sala horario
+ *                 capacidade totalAulas k k x (idAluno faltas m m x (tipo nota)))
+ *   faltas = (totalAulas + 63) / 64 longs, bit i = falta na aula i + 1
+ * </pre>
+ * Textos sao indices no dicionario (-1 para null). As referencias entre
+ * registros usam os ids do {@link RegistroAcademico}: os dicionarios de ids sao
+ * gravados e restaurados na mesma ordem, entao cada entidade volta com o mesmo id.
+ */
+public class SnapshotBinario {
+    public static final String ARQUIVO = "sistema.snap";
+
+    private static final int MAGIC = 0x45503153; // "EP1S"
+    private static final int VERSAO = 5;
+    private static final String[] CSVS = { "alunos.csv", "disciplinas.csv", "professores.csv", "turmas.csv",
+            "notas.csv" };
+
+    private static final int ESPECIAL = 1;
+    private static final int EM_AFASTAMENTO = 2;
+    private static final int PRESENCIAL = 1;
+
+    private SnapshotBinario() {
+    }
+
+    public static File arquivo() {
+        return new File(CsvService.DATA_DIR + ARQUIVO);
+    }
+
+    /**
+     * @return true se o snapshot existe e nenhum CSV foi alterado depois dele
+     */
+    public static boolean isAtualizado() {
+        File snapshot = arquivo();
+        if (!snapshot.exists()) {
+            return false;
+        }
+        for (String csv : CSVS) {
+            File file = new File(CsvService.DATA_DIR + csv);
+            if (file.exists() && file.lastModified() > snapshot.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void salvar(RegistroAcademico registro) throws IOException {
+        Dicionario dicionario = new Dicionario();
+        List<Professor> professores = registro.getProfessores();
+        List<Disciplina> disciplinas = registro.getDisciplinas();
+        List<Aluno> alunos = registro.getAlunos();
+
+        DicionarioIds[] ids = { registro.getMatriculasAlunos(), registro.getCodigosDisciplinas(),
+                registro.getMatriculasProfessores(), registro.getChavesTurmas() };
+        for (DicionarioIds dicionarioIds : ids) {
+            for (int id = 0; id < dicionarioIds.tamanho(); id++) {
+                dicionario.indice(dicionarioIds.texto(id));
+            }
+        }
+        for (Professor p : professores) {
+            dicionario.indice(p.getNome());
+            dicionario.indice(p.getDepartamento());
+        }
+        List<Turma> turmas = new ArrayList<>();
+        for (Disciplina d : disciplinas) {
+            dicionario.indice(d.getNome());
+            for (Turma t : d.getTurmas()) {
+                turmas.add(t);
+                dicionario.indice(t.getCodigo());
+                dicionario.indice(t.getSemestre());
+                dicionario.indice(t.getMetodoAvaliacao());
+                dicionario.indice(t.getSala());
+                dicionario.indice(t.getHorario());
+                for (int ordinal = 0; ordinal < t.getTotalTiposAvaliacao(); ordinal++) {
+                    dicionario.indice(t.getTipoAvaliacao(ordinal));
+                }
+            }
+        }
+        for (Aluno a : alunos) {
+            dicionario.indice(a.getNome());
+            dicionario.indice(a.getCurso());
+        }
+
+        File destino = arquivo();
+        File temporario = new File(destino.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporario), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSAO);
+
+            out.writeInt(dicionario.textos.size());
+            for (String texto : dicionario.textos) {
+                byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            for (DicionarioIds dicionarioIds : ids) {
+                out.writeInt(dicionarioIds.tamanho());
+                for (int id = 0; id < dicionarioIds.tamanho(); id++) {
+                    out.writeInt(dicionario.indice(dicionarioIds.texto(id)));
+                }
+            }
+
+            out.writeInt(professores.size());
+            for (Professor p : professores) {
+                out.writeInt(p.getId());
+                out.writeInt(dicionario.indice(p.getNome()));
+                out.writeInt(dicionario.indice(p.getDepartamento()));
+            }
+
+            out.writeInt(disciplinas.size());
+            for (Disciplina d : disciplinas) {
+                out.writeInt(d.getId());
+                out.writeInt(dicionario.indice(d.getNome()));
+                out.writeInt(d.getCargaHoraria());
+                out.writeInt(d.getPrerequisitos().size());
+                for (int i = 0; i < d.getPrerequisitos().size(); i++) {
+                    out.writeInt(d.getIdPrerequisito(i));
+                }
+            }
+
+            out.writeInt(alunos.size());
+            for (Aluno a : alunos) {
+                out.writeInt(a.getId());
+                out.writeInt(dicionario.indice(a.getNome()));
+                out.writeInt(dicionario.indice(a.getCurso()));
+                out.writeByte((a.isEspecial() ? ESPECIAL : 0) | (a.isEmAfastamento() ? EM_AFASTAMENTO : 0));
+            }
+
+            out.writeInt(turmas.size());
+            for (Turma t : turmas) {
+                out.writeInt(t.getDisciplina().getId());
+                out.writeInt(dicionario.indice(t.getCodigo()));
+                out.writeInt(t.getProfessor().getId());
+                out.writeInt(dicionario.indice(t.getSemestre()));
+                out.writeInt(dicionario.indice(t.getMetodoAvaliacao()));
+                out.writeByte(t.isPresencial() ? PRESENCIAL : 0);
+                out.writeInt(dicionario.indice(t.getSala()));
+                out.writeInt(dicionario.indice(t.getHorario()));
+                out.writeInt(t.getCapacidadeMaxima());
+                out.writeInt(t.getTotalAulas());
+                out.writeInt(t.getTotalMatriculados());
+                for (Aluno a : t.getMatriculados()) {
+                    out.writeInt(a.getId());
+                    for (long palavra : t.getMapaFaltas(a)) {
+                        out.writeLong(palavra);
+                    }
+                    int lancadas = 0;
+                    for (int ordinal = 0; ordinal < t.getTotalTiposAvaliacao(); ordinal++) {
+                        if (!Double.isNaN(t.getNota(a, ordinal))) {
+                            lancadas++;
+                        }
+                    }
+                    out.writeInt(lancadas);
+                    for (int ordinal = 0; ordinal < t.getTotalTiposAvaliacao(); ordinal++) {
+                        double nota = t.getNota(a, ordinal);
+                        if (!Double.isNaN(nota)) {
+                            out.writeInt(dicionario.indice(t.getTipoAvaliacao(ordinal)));
+                            out.writeDouble(nota);
+                        }
+                    }
+                }
+            }
+        }
+        CsvService.substituir(temporario, destino);
+    }
+
+    /**
+     * Preenche o registro (que deve estar vazio) a partir do snapshot.
+     *
+     * @param registro
+     * @throws IOException se o arquivo nao existir ou estiver corrompido
+     */
+    public static void carregar(RegistroAcademico registro) throws IOException {
+        ByteBuffer in = CsvService.lerBytes(arquivo());
+
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSAO) {
+                throw new IOException("Snapshot em formato desconhecido");
+            }
+
+            String[] textos = new String[in.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < textos.length; i++) {
+                int tamanho = in.getInt();
+                if (tamanho > bytes.length) {
+                    bytes = new byte[Math.max(tamanho, bytes.length * 2)];
+                }
+                in.get(bytes, 0, tamanho);
+                textos[i] = new String(bytes, 0, tamanho, StandardCharsets.UTF_8);
+            }
+
+            // os ids sao dados na ordem de chegada: restaurar os dicionarios na
+            // ordem gravada faz cada entidade receber o mesmo id de antes
+            DicionarioIds matriculasAlunos = registro.getMatriculasAlunos();
+            DicionarioIds codigosDisciplinas = registro.getCodigosDisciplinas();
+            DicionarioIds matriculasProfessores = registro.getMatriculasProfessores();
+            for (DicionarioIds ids : new DicionarioIds[] { matriculasAlunos, codigosDisciplinas,
+                    matriculasProfessores, registro.getChavesTurmas() }) {
+                int total = in.getInt();
+                for (int id = 0; id < total; id++) {
+                    if (ids.id(texto(textos, in)) != id) {
+                        throw new IOException("Snapshot corrompido (ids repetidos)");
+                    }
+                }
+            }
+
+            for (int n = in.getInt(); n > 0; n--) {
+                String matricula = matriculasProfessores.texto(in.getInt());
+                registro.adicionarProfessor(new Professor(matricula, texto(textos, in), texto(textos, in)));
+            }
+
+            for (int n = in.getInt(); n > 0; n--) {
+                String codigo = codigosDisciplinas.texto(in.getInt());
+                String nome = texto(textos, in);
+                int cargaHoraria = in.getInt();
+                List<String> prerequisitos = new ArrayList<>();
+                for (int k = in.getInt(); k > 0; k--) {
+                    prerequisitos.add(codigosDisciplinas.texto(in.getInt()));
+                }
+                registro.adicionarDisciplina(new Disciplina(codigo, nome, cargaHoraria, prerequisitos));
+            }
+
+            for (int n = in.getInt(); n > 0; n--) {
+                String matricula = matriculasAlunos.texto(in.getInt());
+                String nome = texto(textos, in);
+                String curso = texto(textos, in);
+                int flags = in.get();
+                Aluno aluno = (flags & ESPECIAL) != 0
+                        ? new AlunoEspecial(nome, matricula, curso)
+                        : new Aluno(nome, matricula, curso, false);
+                aluno.setEmAfastamento((flags & EM_AFASTAMENTO) != 0);
+                registro.adicionarAluno(aluno);
+            }
+
+            for (int n = in.getInt(); n > 0; n--) {
+                Disciplina disciplina = existente(registro.buscarDisciplinaPorId(in.getInt()));
+                String codigo = texto(textos, in);
+                Professor professor = existente(registro.buscarProfessorPorId(in.getInt()));
+                String semestre = texto(textos, in);
+                String metodo = texto(textos, in);
+                boolean presencial = (in.get() & PRESENCIAL) != 0;
+                String sala = texto(textos, in);
+                String horario = texto(textos, in);
+                int capacidade = in.getInt();
+                int totalAulas = in.getInt();
+                Turma turma = new Turma(disciplina, codigo, professor, semestre, metodo, presencial,
+                        sala, horario, capacidade, totalAulas);
+                Map<String, Double> notas = new HashMap<>();
+                long[] faltas = new long[MatrizPresenca.palavras(totalAulas)];
+                for (int k = in.getInt(); k > 0; k--) {
+                    Aluno aluno = existente(registro.buscarAlunoPorId(in.getInt()));
+                    turma.matricularAluno(aluno);
+                    for (int p = 0; p < faltas.length; p++) {
+                        faltas[p] = in.getLong();
+                    }
+                    turma.definirMapaFaltas(aluno, faltas);
+                    notas.clear();
+                    for (int m = in.getInt(); m > 0; m--) {
+                        notas.put(texto(textos, in), in.getDouble());
+                    }
+                    if (!notas.isEmpty()) {
+                        turma.definirNotas(aluno, notas);
+                    }
+                }
+                if (!registro.adicionarTurma(turma)) {
+                    throw new IOException("Snapshot corrompido (turma repetida)");
+                }
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Snapshot corrompido", e);
+        }
+    }
+
+    private static <T> T existente(T entidade) throws IOException {
+        if (entidade == null) {
+            throw new IOException("Snapshot corrompido (referência a id inexistente)");
+        }
+        return entidade;
+    }
+
+    private static String texto(String[] textos, ByteBuffer in) {
+        int indice = in.getInt();
+        return indice < 0 ? null : textos[indice];
+    }
+
+    private static class Dicionario {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> textos = new ArrayList<>();
+
+        int indice(String texto) {
+            if (texto == null) {
+                return -1;
+            }
+            Integer indice = indices.get(texto);
+            if (indice == null) {
+                indice = textos.size();
+                indices.put(texto, indice);
+                textos.add(texto);
+            }
+            return indice;
+        }
+    }
+}
@@ -1,23 +1,126 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Turma de uma disciplina: alunos matriculados, notas, faltas e o resumo de
+ * desempenho.
+ *
+ * Pode ser usada por varias threads ao mesmo tempo. As vagas ficam num contador
+ * atomico: uma turma lotada recusa matriculas lendo o contador, sem bloquear
+ * ninguem, e a vaga so e reservada (CAS) com a trava de escrita, depois de ver
+ * que o aluno ainda nao esta na turma, entao um pedido repetido nunca segura
+ * a vaga de outro e a turma nunca passa da capacidade. Em
+ * {@link #matricular} as regras (trancamento, limite, pre-requisitos, choque
+ * de horario) sao checadas com a trava de escrita e o monitor do aluno, na
+ * mesma etapa que ocupa a vaga, como na promocao da lista de espera. Lista de
+ * alunos, notas, faltas e estatisticas dividem os mesmos slots e ficam sob uma
+ * trava de leitura/escrita: consultas correm em paralelo e cada alteracao
+ * (matricula, remocao, nota, falta) e atomica e visivel por inteiro.
+ */
 public class Turma {
+    public static final String APROVADO = "Aprovado";
+    public static final String REPROVADO_POR_NOTA = "Reprovado por nota";
+    public static final String REPROVADO_POR_FALTA = "Reprovado por falta";
+
+    // resultados de matricular/matricularOuEsperar; os outros sao o motivo da recusa
+    public static final String MATRICULADO = "Matriculado";
+    public static final String LOTADA = "Turma lotada";
+    public static final String NA_ESPERA = "Na lista de espera";
+
+    // situacao guardada por slot; SEM_ALUNO = slot livre
+    private static final byte SEM_ALUNO = 0;
+    private static final byte SITUACAO_APROVADO = 1;
+    private static final byte SITUACAO_REPROVADO_NOTA = 2;
+    private static final byte SITUACAO_REPROVADO_FALTA = 3;
+    private static final String[] SITUACOES = { null, APROVADO, REPROVADO_POR_NOTA, REPROVADO_POR_FALTA };
+
+    /**
+     * Avisado das mudancas na turma dentro da mesma secao critica que as faz
+     * (com a trava de escrita), para que o journal grave as linhas na ordem em
+     * que as mudancas aconteceram. Uma vaga liberada e ocupada em outra sessao,
+     * por exemplo, nunca aparece no journal antes da saida que a liberou.
+     */
+    public interface Movimentos {
+        Movimentos NENHUM = new Movimentos() {
+        };
+
+        default void alunoMatriculado(Turma turma, Aluno aluno) {
+        }
+
+        default void alunoRemovido(Turma turma, Aluno aluno) {
+        }
+
+        /**
+         * O aluno saiu da lista de espera e ocupou a vaga de quem foi removido
+         * (avisado logo depois de {@link #alunoRemovido}).
+         */
+        default void alunoPromovido(Turma turma, Aluno aluno) {
+        }
+
+        default void entrouNaEspera(Turma turma, Aluno aluno, double prioridade) {
+        }
+
+        default void saiuDaEspera(Turma turma, Aluno aluno) {
+        }
+
+        default void notaRegistrada(Turma turma, Aluno aluno, String tipoAvaliacao, double nota) {
+        }
+
+        default void faltasRegistradas(Turma turma, Aluno aluno) {
+        }
+
+        default void chamadaRegistrada(Turma turma, int aula, Collection<Aluno> ausentes) {
+        }
+    }
+
     private final String codigo;
     private final Professor professor;
     private final String semestre;
     private final String metodoAvaliacao;
+    private final MetodoAvaliacao metodo;
     private final boolean presencial;
-    private final String sala;
+    private volatile String sala;
     private final String horario;
+    private final HorarioSemanal horarioSemanal;
     private final int capacidadeMaxima;
     private final int totalAulas;
     private transient Disciplina disciplina;
-    private final List<Aluno> alunosMatriculados = new ArrayList<>();
+    private final ConjuntoIndexado<Aluno> alunosMatriculados = new ConjuntoIndexado<>();
+
+    private final MatrizNotas notas = new MatrizNotas(); // linha = slot do aluno em alunosMatriculados
+    private final MatrizPresenca presenca; // linha = slot do aluno em alunosMatriculados
+    private volatile boolean alterado; // alunos ou sala mudaram desde o ultimo salvamento
+    private volatile boolean notasAlteradas; // notas/faltas mudaram desde o ultimo salvamento
+    private boolean removida; // saiu do registro; so muda com a trava de escrita
+    private int id = -1;
 
-    private final Map<Aluno, Map<String, Double>> notasPorAluno = new HashMap<>();
-    private final Map<Aluno, Integer> faltasPorAluno = new HashMap<>();
+    // vagas ocupadas, nunca acima da capacidade; so muda com a trava de escrita,
+    // mas e lido sem trava (isLotada, getVagasDisponiveis)
+    private final AtomicInteger vagasOcupadas = new AtomicInteger();
+    // protege alunosMatriculados, notas, presenca e as estatisticas abaixo
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+    private final Lock leitura = trava.readLock();
+    private final Lock escrita = trava.writeLock();
+    private final ListaEspera listaEspera = new ListaEspera();
+
+    // media, faltas e situacao de cada slot e as somas da turma, atualizadas a
+    // cada alteracao (ver atualizarSlot) para os resumos nao percorrerem os alunos
+    private double[] mediaPorSlot = new double[0];
+    private int[] faltasPorSlot = new int[0];
+    private byte[] situacaoPorSlot = new byte[0];
+    private double somaMedias;
+    private long somaFaltas;
+    private final int[] totalPorSituacao = new int[SITUACOES.length];
 
     public Turma(Disciplina disciplina, String codigo, Professor professor, String semestre,
             String metodoAvaliacao, boolean presencial,
@@ -27,55 +130,596 @@ public class Turma {
         }
         this.codigo = codigo;
         this.professor = professor;
-        this.semestre = semestre;
+        this.semestre = semestre == null ? null : semestre.intern(); // repetido em todas as turmas do semestre
         this.metodoAvaliacao = metodoAvaliacao;
+        this.metodo = MetodosAvaliacao.resolver(metodoAvaliacao);
         this.presencial = presencial;
         this.sala = presencial ? sala : null;
         this.horario = horario;
+        this.horarioSemanal = HorarioSemanal.parse(horario);
         this.capacidadeMaxima = capacidadeMaxima;
         this.totalAulas = totalAulas;
+        this.presenca = new MatrizPresenca(totalAulas);
         this.disciplina = disciplina;
     }
 
+    /**
+     * @param aluno
+     * @return false se a turma esta lotada ou o aluno ja esta matriculado
+     */
     public boolean matricularAluno(Aluno aluno) {
+        return matricularAluno(aluno, Movimentos.NENHUM);
+    }
+
+    /**
+     * @param aluno
+     * @param movimentos avisado da matricula
+     * @return false se a turma esta lotada ou o aluno ja esta matriculado
+     */
+    public boolean matricularAluno(Aluno aluno, Movimentos movimentos) {
         if (aluno == null || isLotada()) {
             return false;
         }
-        alunosMatriculados.add(aluno);
-        notasPorAluno.putIfAbsent(aluno, new HashMap<>());
-        faltasPorAluno.putIfAbsent(aluno, 0);
-        return true;
+        escrita.lock();
+        try {
+            if (alunosMatriculados.slot(aluno) >= 0 || !reservarVaga()) {
+                return false;
+            }
+            incluir(aluno);
+            listaEspera.sair(aluno);
+            movimentos.alunoMatriculado(this, aluno);
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Matricula o aluno se ele cumpre as regras da matricula: semestre nao
+     * trancado, limite do aluno especial, pre-requisitos e sem choque de
+     * horario. A checagem e a matricula sao uma etapa so.
+     *
+     * @param aluno
+     * @param movimentos avisado da matricula
+     * @return {@link #MATRICULADO}, {@link #LOTADA} ou o motivo da recusa
+     */
+    public String matricular(Aluno aluno, Movimentos movimentos) {
+        escrita.lock();
+        try {
+            synchronized (aluno) {
+                String motivo = impedimento(aluno);
+                if (motivo != null) {
+                    return motivo;
+                }
+                if (!reservarVaga()) {
+                    return LOTADA;
+                }
+                incluir(aluno);
+                listaEspera.sair(aluno);
+                movimentos.alunoMatriculado(this, aluno);
+                return MATRICULADO;
+            }
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Como {@link #matricular}, mas com a turma lotada poe o aluno na lista de
+     * espera, sem soltar a trava entre uma coisa e outra: a vaga que abrir
+     * antes disso e dele.
+     *
+     * @param aluno
+     * @param prioridade prioridade na lista de espera
+     * @param movimentos avisado da matricula ou da entrada na lista
+     * @return {@link #MATRICULADO}, {@link #NA_ESPERA} (tambem se ja estava na
+     *         lista) ou o motivo da recusa
+     */
+    public String matricularOuEsperar(Aluno aluno, double prioridade, Movimentos movimentos) {
+        escrita.lock();
+        try {
+            String situacao = matricular(aluno, movimentos);
+            if (!situacao.equals(LOTADA)) {
+                return situacao;
+            }
+            if (listaEspera.entrar(aluno, prioridade)) {
+                movimentos.entrouNaEspera(this, aluno, prioridade);
+            }
+            return NA_ESPERA;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    // chamado com a trava de escrita e a vaga ja reservada
+    private void incluir(Aluno aluno) {
+        int slot = alunosMatriculados.adicionar(aluno);
+        aluno.adicionarTurma(this);
+        atualizarSlot(slot);
+        alterado = true;
+    }
+
+    private boolean reservarVaga() {
+        while (true) {
+            int ocupadas = vagasOcupadas.get();
+            if (ocupadas >= capacidadeMaxima) {
+                return false;
+            }
+            if (vagasOcupadas.compareAndSet(ocupadas, ocupadas + 1)) {
+                return true;
+            }
+        }
     }
 
+    /**
+     * Tira o aluno da turma; a vaga vai para o primeiro da lista de espera que
+     * puder ocupa-la.
+     *
+     * @param aluno
+     */
     public void removerAluno(Aluno aluno) {
-        alunosMatriculados.remove(aluno);
-        notasPorAluno.remove(aluno);
-        faltasPorAluno.remove(aluno);
+        removerAluno(aluno, Movimentos.NENHUM);
+    }
+
+    /**
+     * @param aluno
+     * @param movimentos avisado da remocao e, depois, da promocao
+     * @return false se o aluno nao estava na turma
+     */
+    public boolean removerAluno(Aluno aluno, Movimentos movimentos) {
+        escrita.lock();
+        try {
+            return remover(aluno, true, movimentos);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Tira o aluno sem promover ninguem da lista de espera. Usado ao reaplicar
+     * o journal, onde a promocao tem linha propria.
+     *
+     * @param aluno
+     * @return false se o aluno nao estava na turma
+     */
+    public boolean removerSemPromover(Aluno aluno) {
+        escrita.lock();
+        try {
+            return remover(aluno, false, Movimentos.NENHUM);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Tira todos os alunos da turma (turma removida ou recusada pelo registro),
+     * para que o indice reverso dos alunos nao aponte mais para ela. A lista de
+     * espera e esvaziada antes e ninguem e promovido: a turma vai deixar de
+     * existir.
+     *
+     * @param movimentos avisado de cada aluno que sai da lista de espera
+     */
+    public void removerTodosAlunos(Movimentos movimentos) {
+        escrita.lock();
+        try {
+            removida = true;
+            for (ListaEspera.Entrada entrada : listaEspera.getEntradas()) {
+                if (listaEspera.sair(entrada.aluno())) {
+                    movimentos.saiuDaEspera(this, entrada.aluno());
+                }
+            }
+            for (Aluno aluno : getAlunosMatriculados()) {
+                remover(aluno, false, Movimentos.NENHUM);
+            }
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    // chamado com a trava de escrita
+    private boolean remover(Aluno aluno, boolean promover, Movimentos movimentos) {
+        int slot = alunosMatriculados.remover(aluno);
+        if (slot < 0) {
+            return false;
+        }
+        aluno.removerTurma(this);
+        notas.limpar(slot);
+        presenca.limpar(slot);
+        if (atualizarSlot(slot)) {
+            aluno.atualizarConclusao(disciplina, false);
+        }
+        alterado = true;
+        notasAlteradas = true;
+        movimentos.alunoRemovido(this, aluno);
+        if (!promover || !promoverDaEspera(movimentos)) {
+            vagasOcupadas.decrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Poe o aluno na lista de espera.
+     *
+     * @param aluno
+     * @param prioridade
+     * @param movimentos avisado da entrada
+     * @return false se o aluno ja esta na turma ou na lista, ou se a turma foi
+     *         removida
+     */
+    public boolean entrarNaEspera(Aluno aluno, double prioridade, Movimentos movimentos) {
+        escrita.lock();
+        try {
+            if (removida || alunosMatriculados.slot(aluno) >= 0 || !listaEspera.entrar(aluno, prioridade)) {
+                return false;
+            }
+            movimentos.entrouNaEspera(this, aluno, prioridade);
+            return true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * @param aluno
+     * @param movimentos avisado da saida
+     * @return false se o aluno nao estava na lista de espera
+     */
+    public boolean sairDaEspera(Aluno aluno, Movimentos movimentos) {
+        escrita.lock();
+        try {
+            if (!listaEspera.sair(aluno)) {
+                return false;
+            }
+            movimentos.saiuDaEspera(this, aluno);
+            return true;
+        } finally {
+            escrita.unlock();
+        }
     }
 
     public void registrarNota(Aluno aluno, String tipoAvaliacao, double nota) {
-        if (!alunosMatriculados.contains(aluno)) {
-            throw new IllegalArgumentException("Aluno não está matriculado nesta turma");
+        registrarNota(aluno, tipoAvaliacao, nota, Movimentos.NENHUM);
+    }
+
+    public void registrarNota(Aluno aluno, String tipoAvaliacao, double nota, Movimentos movimentos) {
+        escrita.lock();
+        try {
+            int slot = slotMatriculado(aluno);
+            if (nota < 0 || nota > 10) {
+                throw new IllegalArgumentException("Nota deve estar entre 0 e 10");
+            }
+            notas.definir(slot, tipoAvaliacao, nota);
+            atualizarSlot(slot);
+            notasAlteradas = true;
+            movimentos.notaRegistrada(this, aluno, tipoAvaliacao, nota);
+        } finally {
+            escrita.unlock();
         }
-        if (nota < 0 || nota > 10) {
-            throw new IllegalArgumentException("Nota deve estar entre 0 e 10");
+    }
+
+    /**
+     * Grava varias notas do aluno de uma vez (carga de dados).
+     *
+     * @param aluno
+     * @param notas tipo de avaliacao -> nota
+     */
+    public void definirNotas(Aluno aluno, Map<String, Double> notas) {
+        escrita.lock();
+        try {
+            int slot = slotMatriculado(aluno);
+            for (double nota : notas.values()) {
+                if (nota < 0 || nota > 10) {
+                    throw new IllegalArgumentException("Nota deve estar entre 0 e 10");
+                }
+            }
+            notas.forEach((tipo, nota) -> this.notas.definir(slot, tipo, nota));
+            atualizarSlot(slot);
+            notasAlteradas = true;
+        } finally {
+            escrita.unlock();
         }
-        notasPorAluno.get(aluno).put(tipoAvaliacao, nota);
     }
 
+    /**
+     * @return copia das notas do aluno, na ordem das colunas (P1, P2, P3, L, S,
+     *         depois os outros tipos)
+     */
     public Map<String, Double> getNotas(Aluno aluno) {
-        return new HashMap<>(notasPorAluno.getOrDefault(aluno, new HashMap<>()));
+        leitura.lock();
+        try {
+            Map<String, Double> copia = new LinkedHashMap<>();
+            int slot = alunosMatriculados.slot(aluno);
+            if (slot >= 0) {
+                for (int ordinal = 0; ordinal < notas.getTotalTipos(); ordinal++) {
+                    double nota = notas.get(slot, ordinal);
+                    if (!Double.isNaN(nota)) {
+                        copia.put(notas.getTipo(ordinal), nota);
+                    }
+                }
+            }
+            return copia;
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @param aluno
+     * @param ordinal coluna do tipo de avaliacao (ex: {@link MatrizNotas#P1})
+     * @return a nota, ou NaN se nao foi lancada ou o aluno nao esta na turma
+     */
+    public double getNota(Aluno aluno, int ordinal) {
+        leitura.lock();
+        try {
+            int slot = alunosMatriculados.slot(aluno);
+            return slot < 0 || ordinal >= notas.getTotalTipos() ? Double.NaN : notas.get(slot, ordinal);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public double getNota(Aluno aluno, String tipoAvaliacao) {
+        leitura.lock();
+        try {
+            int ordinal = notas.ordinal(tipoAvaliacao);
+            return ordinal < 0 ? Double.NaN : getNota(aluno, ordinal);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @return numero de colunas de notas; os tipos vao de 0 ate este valor - 1
+     */
+    public int getTotalTiposAvaliacao() {
+        leitura.lock();
+        try {
+            return notas.getTotalTipos();
+        } finally {
+            leitura.unlock();
+        }
     }
 
+    public String getTipoAvaliacao(int ordinal) {
+        leitura.lock();
+        try {
+            return notas.getTipo(ordinal);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public boolean possuiNotas(Aluno aluno) {
+        leitura.lock();
+        try {
+            int slot = alunosMatriculados.slot(aluno);
+            return slot >= 0 && notas.possuiNotas(slot);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * Registra uma falta na primeira aula em que o aluno ainda esta presente.
+     *
+     * @param aluno
+     */
     public void registrarFalta(Aluno aluno) {
-        if (!alunosMatriculados.contains(aluno)) {
-            throw new IllegalArgumentException("Aluno não está matriculado nesta turma");
+        registrarFaltas(aluno, 1, Movimentos.NENHUM);
+    }
+
+    /**
+     * Registra varias faltas de uma vez, cada uma na primeira aula em que o
+     * aluno ainda esta presente.
+     *
+     * @param aluno
+     * @param quantidade
+     * @param movimentos avisado uma vez, no fim
+     */
+    public void registrarFaltas(Aluno aluno, int quantidade, Movimentos movimentos) {
+        escrita.lock();
+        try {
+            int slot = slotMatriculado(aluno);
+            if (quantidade < 0) {
+                throw new IllegalArgumentException("Número de faltas inválido");
+            }
+            if (presenca.getFaltas(slot) + quantidade > totalAulas) {
+                throw new IllegalArgumentException("Aluno já tem falta em todas as aulas");
+            }
+            for (int i = 0; i < quantidade; i++) {
+                presenca.marcar(slot, presenca.proximaAulaSemFalta(slot), true);
+            }
+            atualizarSlot(slot);
+            notasAlteradas = true;
+            movimentos.faltasRegistradas(this, aluno);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Define o total de faltas do aluno de uma vez, marcando as primeiras aulas
+     * (dados antigos, sem o mapa por aula). O total e limitado a totalAulas.
+     *
+     * @param aluno
+     * @param faltas
+     */
+    public void definirFaltas(Aluno aluno, int faltas) {
+        escrita.lock();
+        try {
+            int slot = slotMatriculado(aluno);
+            if (faltas < 0) {
+                throw new IllegalArgumentException("Número de faltas inválido");
+            }
+            presenca.definirTotal(slot, faltas);
+            atualizarSlot(slot);
+            notasAlteradas = true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * @param aluno
+     * @param aula  numero da aula, de 1 a totalAulas
+     * @param falta true para falta, false para presenca
+     */
+    public void marcarPresenca(Aluno aluno, int aula, boolean falta) {
+        escrita.lock();
+        try {
+            int slot = slotMatriculado(aluno);
+            presenca.marcar(slot, aula - 1, falta);
+            atualizarSlot(slot);
+            notasAlteradas = true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Marca falta na aula para todos os alunos informados.
+     *
+     * @param aula    numero da aula, de 1 a totalAulas
+     * @param alunos
+     */
+    public void marcarFaltas(int aula, Collection<Aluno> alunos) {
+        escrita.lock();
+        try {
+            marcarAula(aula, alunos, true);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Marca presenca na aula para todos os alunos informados.
+     *
+     * @param aula    numero da aula, de 1 a totalAulas
+     * @param alunos
+     */
+    public void marcarPresencas(int aula, Collection<Aluno> alunos) {
+        escrita.lock();
+        try {
+            marcarAula(aula, alunos, false);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * Chamada completa de uma aula: presenca para toda a turma e falta para os
+     * ausentes.
+     *
+     * @param aula     numero da aula, de 1 a totalAulas
+     * @param ausentes
+     */
+    public void registrarChamada(int aula, Collection<Aluno> ausentes) {
+        registrarChamada(aula, ausentes, Movimentos.NENHUM);
+    }
+
+    public void registrarChamada(int aula, Collection<Aluno> ausentes, Movimentos movimentos) {
+        escrita.lock();
+        try {
+            for (Aluno aluno : ausentes) {
+                slotMatriculado(aluno);
+            }
+            marcarAula(aula, alunosMatriculados, false);
+            marcarAula(aula, ausentes, true);
+            movimentos.chamadaRegistrada(this, aula, ausentes);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    private void marcarAula(int aula, Collection<Aluno> alunos, boolean falta) {
+        int[] slots = new int[alunos.size()];
+        int n = 0;
+        for (Aluno aluno : alunos) {
+            slots[n++] = slotMatriculado(aluno);
+        }
+        for (int i = 0; i < n; i++) {
+            presenca.marcar(slots[i], aula - 1, falta);
+            atualizarSlot(slots[i]);
+        }
+        notasAlteradas = true;
+    }
+
+    /**
+     * @param aluno
+     * @param aula  numero da aula, de 1 a totalAulas
+     * @return true se o aluno faltou naquela aula
+     */
+    public boolean isFalta(Aluno aluno, int aula) {
+        leitura.lock();
+        try {
+            int slot = alunosMatriculados.slot(aluno);
+            return slot >= 0 && aula >= 1 && aula <= totalAulas && presenca.isFalta(slot, aula - 1);
+        } finally {
+            leitura.unlock();
         }
-        faltasPorAluno.put(aluno, faltasPorAluno.getOrDefault(aluno, 0) + 1);
     }
 
     public int getFaltas(Aluno aluno) {
-        return faltasPorAluno.getOrDefault(aluno, 0);
+        leitura.lock();
+        try {
+            int slot = alunosMatriculados.slot(aluno);
+            return slot < 0 ? 0 : presenca.getFaltas(slot);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @param aluno
+     * @return copia do bitset de faltas (bit i = aula i + 1)
+     */
+    public long[] getMapaFaltas(Aluno aluno) {
+        leitura.lock();
+        try {
+            int slot = alunosMatriculados.slot(aluno);
+            return slot < 0 ? new long[presenca.getPalavras()] : presenca.getLinha(slot);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * Substitui todas as faltas do aluno pelo bitset (carga de dados / journal).
+     *
+     * @param aluno
+     * @param mapa  bit i = falta na aula i + 1
+     */
+    public void definirMapaFaltas(Aluno aluno, long[] mapa) {
+        escrita.lock();
+        try {
+            int slot = slotMatriculado(aluno);
+            presenca.definirLinha(slot, mapa);
+            atualizarSlot(slot);
+            notasAlteradas = true;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    /**
+     * @param aluno
+     * @return true se o aluno tem alguma nota ou falta lancada
+     */
+    public boolean possuiLancamentos(Aluno aluno) {
+        leitura.lock();
+        try {
+            return possuiNotas(aluno) || getFaltas(aluno) > 0;
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    private int slotMatriculado(Aluno aluno) {
+        int slot = alunosMatriculados.slot(aluno);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Aluno não está matriculado nesta turma");
+        }
+        return slot;
     }
 
     public String getMetodoAvaliacao() {
@@ -83,39 +727,212 @@ public class Turma {
     }
 
     public double calcularMedia(Aluno aluno) {
-        Map<String, Double> notas = getNotas(aluno);
-        if (notas.isEmpty())
-            return 0.0;
-
-        if (this.metodoAvaliacao.equals("Método 1")) {
-            return (notas.getOrDefault("P1", 0.0) +
-                    notas.getOrDefault("P2", 0.0) +
-                    notas.getOrDefault("P3", 0.0) +
-                    notas.getOrDefault("L", 0.0) +
-                    notas.getOrDefault("S", 0.0)) / 5;
-        } else {
-            return (notas.getOrDefault("P1", 0.0) +
-                    notas.getOrDefault("P2", 0.0) * 2 +
-                    notas.getOrDefault("P3", 0.0) * 3 +
-                    notas.getOrDefault("L", 0.0) +
-                    notas.getOrDefault("S", 0.0)) / 8;
+        leitura.lock();
+        try {
+            int slot = alunosMatriculados.slot(aluno);
+            return slot < 0 ? 0.0 : mediaPorSlot[slot];
+        } finally {
+            leitura.unlock();
         }
     }
 
+    private double mediaDoSlot(int slot) {
+        return notas.media(slot, metodo);
+    }
+
     public double calcularFrequencia(Aluno aluno) {
+        leitura.lock();
+        try {
+            int slot = alunosMatriculados.slot(aluno);
+            return frequencia(slot < 0 ? 0 : faltasPorSlot[slot]);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    private double frequencia(int faltas) {
         if (totalAulas == 0)
             return 0.0;
-        int presencas = totalAulas - getFaltas(aluno);
+        int presencas = totalAulas - faltas;
         return (double) presencas / totalAulas * 100;
     }
 
     public String verificarAprovacao(Aluno aluno) {
-        double media = calcularMedia(aluno);
-        double frequencia = calcularFrequencia(aluno);
+        leitura.lock();
+        try {
+            int slot = alunosMatriculados.slot(aluno);
+            return SITUACOES[slot < 0 ? situacao(0.0, 0) : situacaoPorSlot[slot]];
+        } finally {
+            leitura.unlock();
+        }
+    }
 
-        if (frequencia < 75)
-            return "Reprovado por falta";
-        return media >= 5 ? "Aprovado" : "Reprovado por nota";
+    private byte situacao(double media, int faltas) {
+        if (frequencia(faltas) < 75)
+            return SITUACAO_REPROVADO_FALTA;
+        return media >= 5 ? SITUACAO_APROVADO : SITUACAO_REPROVADO_NOTA;
+    }
+
+    /**
+     * Passa a vaga que acabou de ser liberada ao primeiro aluno da lista de
+     * espera que pode se matricular, sem devolve-la ao contador: ninguem de
+     * fora da fila consegue pegar a vaga no meio do caminho. Chamado com a
+     * trava de escrita.
+     *
+     * @return false se ninguem da fila entrou (a vaga fica livre)
+     */
+    private boolean promoverDaEspera(Movimentos movimentos) {
+        if (listaEspera.isVazia()) {
+            return false;
+        }
+        Aluno aluno = listaEspera.promover(this::ocuparVagaDaEspera);
+        if (aluno == null) {
+            return false;
+        }
+        movimentos.alunoPromovido(this, aluno);
+        return true;
+    }
+
+    // chamado com a trava de escrita; checa e inclui no monitor do aluno, como matricular
+    private boolean ocuparVagaDaEspera(Aluno aluno) {
+        synchronized (aluno) {
+            if (impedimento(aluno) != null) {
+                return false;
+            }
+            incluir(aluno);
+            return true;
+        }
+    }
+
+    /**
+     * @return por que o aluno nao pode entrar na turma, ou null se pode
+     *
+     *         Chamado com a trava de escrita e o monitor do aluno.
+     */
+    private String impedimento(Aluno aluno) {
+        if (removida) {
+            return "Turma não encontrada";
+        }
+        if (aluno.isEmAfastamento()) {
+            return "Semestre trancado";
+        }
+        if (aluno.isMatriculadoEm(disciplina, semestre)) {
+            return "Já matriculado na disciplina";
+        }
+        if (!aluno.podeMatricular(aluno.getTotalTurmas())) {
+            return "Aluno especial atingiu o limite de disciplinas";
+        }
+        if (!disciplina.preRequisitosAtendidos(aluno)) {
+            return "Pré-requisitos não cumpridos";
+        }
+        Turma conflito = aluno.buscarConflitoDeHorario(this);
+        if (conflito != null) {
+            return "Conflito de horário com " + conflito.getDisciplina().getCodigo() + " " + conflito.getCodigo();
+        }
+        return null;
+    }
+
+    /**
+     * Recalcula media, faltas e situacao do slot e corrige as somas da turma.
+     * Chamado por todo metodo que altera matriculas, notas ou faltas. Se a
+     * aprovacao do aluno mudar, atualiza as disciplinas concluidas do aluno.
+     *
+     * @return true se o slot estava aprovado e ficou vazio (aluno saiu); quem
+     *         removeu o aluno atualiza a conclusao dele
+     *
+     *         Chamado com a trava de escrita.
+     */
+    private boolean atualizarSlot(int slot) {
+        if (slot >= situacaoPorSlot.length) {
+            int tamanho = Math.max(slot + 1, Math.max(8, situacaoPorSlot.length + (situacaoPorSlot.length >> 1)));
+            mediaPorSlot = Arrays.copyOf(mediaPorSlot, tamanho);
+            faltasPorSlot = Arrays.copyOf(faltasPorSlot, tamanho);
+            situacaoPorSlot = Arrays.copyOf(situacaoPorSlot, tamanho);
+        }
+        byte anterior = situacaoPorSlot[slot];
+        if (anterior != SEM_ALUNO) {
+            somaMedias -= mediaPorSlot[slot];
+            somaFaltas -= faltasPorSlot[slot];
+            totalPorSituacao[anterior]--;
+        }
+        Aluno aluno = alunosMatriculados.get(slot);
+        if (aluno == null) {
+            situacaoPorSlot[slot] = SEM_ALUNO;
+            if (alunosMatriculados.isEmpty()) {
+                somaMedias = 0.0; // descarta o erro de arredondamento acumulado
+            }
+            return anterior == SITUACAO_APROVADO;
+        }
+        double media = mediaDoSlot(slot);
+        int faltas = presenca.getFaltas(slot);
+        byte situacao = situacao(media, faltas);
+        mediaPorSlot[slot] = media;
+        faltasPorSlot[slot] = faltas;
+        situacaoPorSlot[slot] = situacao;
+        somaMedias += media;
+        somaFaltas += faltas;
+        totalPorSituacao[situacao]++;
+        if ((anterior == SITUACAO_APROVADO) != (situacao == SITUACAO_APROVADO)) {
+            aluno.atualizarConclusao(disciplina, situacao == SITUACAO_APROVADO);
+        }
+        return false;
+    }
+
+    /**
+     * @return media das medias dos alunos matriculados, ou 0 se a turma esta
+     *         vazia
+     */
+    public double getMediaTurma() {
+        leitura.lock();
+        try {
+            int n = alunosMatriculados.size();
+            return n == 0 ? 0.0 : somaMedias / n;
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @return media das frequencias dos alunos matriculados, ou 0 se a turma
+     *         esta vazia
+     */
+    public double getFrequenciaMedia() {
+        leitura.lock();
+        try {
+            long aulas = (long) alunosMatriculados.size() * totalAulas;
+            if (aulas == 0)
+                return 0.0;
+            return (double) (aulas - somaFaltas) / aulas * 100;
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public int getTotalAprovados() {
+        leitura.lock();
+        try {
+            return totalPorSituacao[SITUACAO_APROVADO];
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public int getTotalReprovadosPorNota() {
+        leitura.lock();
+        try {
+            return totalPorSituacao[SITUACAO_REPROVADO_NOTA];
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public int getTotalReprovadosPorFalta() {
+        leitura.lock();
+        try {
+            return totalPorSituacao[SITUACAO_REPROVADO_FALTA];
+        } finally {
+            leitura.unlock();
+        }
     }
 
     public String getCodigo() {
@@ -138,10 +955,40 @@ public class Turma {
         return sala;
     }
 
+    /**
+     * Troca a sala (alocacao de salas); use
+     * {@link RegistroAcademico#definirSala} para manter o indice por sala.
+     *
+     * @param sala
+     */
+    void setSala(String sala) {
+        escrita.lock();
+        try {
+            if (presencial) {
+                this.sala = sala;
+                this.alterado = true;
+            }
+        } finally {
+            escrita.unlock();
+        }
+    }
+
     public String getHorario() {
         return horario;
     }
 
+    /**
+     * @return o horario como bitmask da semana (vazio se o texto nao esta no
+     *         formato "Seg 14h-16h")
+     */
+    public HorarioSemanal getHorarioSemanal() {
+        return horarioSemanal;
+    }
+
+    public ListaEspera getListaEspera() {
+        return listaEspera;
+    }
+
     public int getCapacidadeMaxima() {
         return capacidadeMaxima;
     }
@@ -154,22 +1001,92 @@ public class Turma {
         return totalAulas;
     }
 
+    /**
+     * @return copia da lista de alunos, na ordem de matricula
+     */
     public List<Aluno> getAlunosMatriculados() {
-        return new ArrayList<>(alunosMatriculados);
+        leitura.lock();
+        try {
+            return new ArrayList<>(alunosMatriculados);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    /**
+     * @return foto somente leitura dos alunos, na ordem de matricula; nao muda
+     *         com matriculas feitas depois
+     */
+    public Set<Aluno> getMatriculados() {
+        leitura.lock();
+        try {
+            return Collections.unmodifiableSet(new LinkedHashSet<>(alunosMatriculados));
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public boolean isMatriculado(Aluno aluno) {
+        leitura.lock();
+        try {
+            return alunosMatriculados.contains(aluno);
+        } finally {
+            leitura.unlock();
+        }
+    }
+
+    public int getTotalMatriculados() {
+        leitura.lock();
+        try {
+            return alunosMatriculados.size();
+        } finally {
+            leitura.unlock();
+        }
     }
 
     public int getVagasDisponiveis() {
-        return capacidadeMaxima - alunosMatriculados.size();
+        return capacidadeMaxima - vagasOcupadas.get();
     }
 
     public boolean isLotada() {
-        return alunosMatriculados.size() >= capacidadeMaxima;
+        return vagasOcupadas.get() >= capacidadeMaxima;
     }
 
     public void setDisciplina(Disciplina disciplina) {
         this.disciplina = disciplina;
     }
 
+    /**
+     * @return id atribuido pelo {@link RegistroAcademico}, ou -1 se ainda nao
+     *         foi registrado
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    public boolean isAlterado() {
+        return alterado;
+    }
+
+    public boolean isNotasAlteradas() {
+        return notasAlteradas;
+    }
+
+    public void marcarSalvo() {
+        escrita.lock();
+        try {
+            alterado = false;
+            notasAlteradas = false;
+            listaEspera.marcarSalva();
+        } finally {
+            escrita.unlock();
+        }
+    }
+
     public String getInfo() {
         return String.format(
                 "%s | %s | %s | %s | %s | %d/%d vagas",
@@ -178,7 +1095,7 @@ public class Turma {
                 horario,
                 presencial ? "Presencial" : "Remoto",
                 presencial ? sala : "N/A",
-                alunosMatriculados.size(),
+                getTotalMatriculados(),
                 capacidadeMaxima);
     }
 
@@ -0,0 +1,33 @@
+import java.io.IOException;
+
+public class TurmaCsvFormatter implements CsvService.CsvFormatter<Turma> {
+    @Override
+    public String getHeader() {
+        return "codigo,disciplinaCodigo,professorMatricula,semestre,metodoAvaliacao,presencial,sala,horario,capacidadeMaxima,totalAulas,alunosMatriculados";
+    }
+
+    @Override
+    public void format(Turma turma, CsvEscritor out) throws IOException {
+        // texto livre vai escapado: o horario, por exemplo, separa blocos com virgula
+        out.campoEscapado(turma.getCodigo())
+                .campo(turma.getDisciplina().getCodigo())
+                .campo(turma.getProfessor().getMatricula())
+                .campoEscapado(turma.getSemestre())
+                .campoEscapado(turma.getMetodoAvaliacao())
+                .campo(turma.isPresencial())
+                .campoEscapado(turma.getSala())
+                .campoEscapado(turma.getHorario())
+                .campo(turma.getCapacidadeMaxima())
+                .campo(turma.getTotalAulas());
+
+        out.campo();
+        boolean primeiro = true;
+        for (Aluno aluno : turma.getMatriculados()) {
+            if (!primeiro) {
+                out.append(';');
+            }
+            primeiro = false;
+            out.append(aluno.getMatricula());
+        }
+    }
+}
\ No newline at end of file